@@ -0,0 +1,172 @@
+package boaexamplepackage;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+
+import negotiator.Bid;
+import negotiator.BidHistory;
+import negotiator.Domain;
+import negotiator.DomainImpl;
+import negotiator.bidding.BidDetails;
+import negotiator.boaframework.NegotiationSession;
+import negotiator.boaframework.OpponentModel;
+import negotiator.issue.Issue;
+import negotiator.issue.IssueDiscrete;
+import negotiator.issue.Value;
+
+/**
+ * Compares the per-offer cost of {@link HardHeadedFrequencyModel} and
+ * {@link HardHeadedArrayFrequencyModel}. Both models are fed the same scripted
+ * opponent offers (the opponent keeps a favourite bid and changes one issue of
+ * it in half of its offers), and for each domain and model the time and the
+ * allocated bytes of updateModel and of getBidEvaluation are reported per call.
+ *
+ * The offers are created and added to the history outside the measurement.
+ * Allocations are measured with the per-thread allocation counter of the
+ * HotSpot JVM, they are reported as -1 if it is not available.
+ *
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar
+ * boaexamplepackage.FrequencyModelBenchmark [offers] [sessions] [domain]...
+ */
+public class FrequencyModelBenchmark {
+
+	private static final String[] DOMAINS = { "etc/templates/partydomain/party_domain.xml",
+			"etc/templates/ANAC2016/Maxoops/WindFarm.xml", "etc/templates/ANAC2016/parsCat/domain.xml",
+			"etc/templates/journal_learning/six_issues/six_issues.xml" };
+	private static final int NUMBER_OF_WARMUP_SESSIONS = 3;
+
+	private static com.sun.management.ThreadMXBean threadBean;
+
+	/**
+	 * A negotiation session which only holds the domain and the offers of the
+	 * opponent, which is all the opponent models use.
+	 */
+	private static class ScriptedSession extends NegotiationSession {
+		private Domain domain;
+		private BidHistory opponentBidHistory = new BidHistory();
+
+		private ScriptedSession(Domain domain) {
+			this.domain = domain;
+		}
+
+		@Override
+		public Domain getDomain() {
+			return domain;
+		}
+
+		@Override
+		public BidHistory getOpponentBidHistory() {
+			return opponentBidHistory;
+		}
+	}
+
+	private static class Measurement {
+		private long updates;
+		private long updateNanoseconds;
+		private long updateAllocatedBytes;
+		private long evaluations;
+		private long evaluationNanoseconds;
+		private long evaluationAllocatedBytes;
+		private double checksum;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int numberOfOffers = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		int numberOfSessions = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+		String[] domains = (args.length > 2) ? java.util.Arrays.copyOfRange(args, 2, args.length) : DOMAINS;
+
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+			threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			if (threadBean.isThreadAllocatedMemorySupported()) {
+				threadBean.setThreadAllocatedMemoryEnabled(true);
+			} else {
+				threadBean = null;
+			}
+		}
+
+		System.out.println("domain\tmodel\tns/update\tbytes/update\tns/evaluation\tbytes/evaluation");
+
+		for (String domainFile : domains) {
+			Domain domain = new DomainImpl(domainFile);
+			String name = domainFile.substring(domainFile.indexOf("templates/") + "templates/".length());
+
+			for (int model = 0; model < 2; model++) {
+				for (int i = 0; i < NUMBER_OF_WARMUP_SESSIONS; i++) {
+					runSession(domain, model, numberOfOffers, new Measurement());
+				}
+				Measurement measurement = new Measurement();
+				for (int i = 0; i < numberOfSessions; i++) {
+					runSession(domain, model, numberOfOffers, measurement);
+				}
+				print(name, createModel(model).getClass().getSimpleName(), measurement);
+			}
+		}
+	}
+
+	private static OpponentModel createModel(int model) {
+		return (model == 0) ? new HardHeadedFrequencyModel() : new HardHeadedArrayFrequencyModel();
+	}
+
+	private static void runSession(Domain domain, int model, int numberOfOffers, Measurement measurement)
+			throws Exception {
+		ScriptedSession session = new ScriptedSession(domain);
+		OpponentModel opponentModel = createModel(model);
+		Random random = new Random(42);
+		Bid favouriteBid = domain.getRandomBid(random);
+
+		opponentModel.init(session, new HashMap<String, Double>());
+
+		for (int offer = 0; offer < numberOfOffers; offer++) {
+			Bid bid = getScriptedOffer(domain, favouriteBid, random);
+			Bid evaluatedBid = domain.getRandomBid(random);
+			session.getOpponentBidHistory().add(new BidDetails(bid, 0, (double) offer / numberOfOffers));
+
+			long startBytes = getAllocatedBytes();
+			long start = System.nanoTime();
+			opponentModel.updateModel(bid, (double) offer / numberOfOffers);
+			measurement.updateNanoseconds += System.nanoTime() - start;
+			measurement.updateAllocatedBytes += getAllocatedBytes() - startBytes;
+			measurement.updates++;
+
+			startBytes = getAllocatedBytes();
+			start = System.nanoTime();
+			measurement.checksum += opponentModel.getBidEvaluation(evaluatedBid);
+			measurement.evaluationNanoseconds += System.nanoTime() - start;
+			measurement.evaluationAllocatedBytes += getAllocatedBytes() - startBytes;
+			measurement.evaluations++;
+		}
+	}
+
+	/**
+	 * The favourite bid, or the favourite bid with a random value in one of its
+	 * issues.
+	 */
+	private static Bid getScriptedOffer(Domain domain, Bid favouriteBid, Random random) throws Exception {
+		if (random.nextBoolean()) {
+			return favouriteBid;
+		}
+		IssueDiscrete issue = (IssueDiscrete) domain.getIssues().get(random.nextInt(domain.getIssues().size()));
+		HashMap<Integer, Value> values = new HashMap<Integer, Value>();
+		for (Issue i : domain.getIssues()) {
+			values.put(i.getNumber(), favouriteBid.getValue(i.getNumber()));
+		}
+		values.put(issue.getNumber(), issue.getValue(random.nextInt(issue.getNumberOfValues())));
+		return new Bid(domain, values);
+	}
+
+	private static long getAllocatedBytes() {
+		return (threadBean != null) ? threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+
+	private static void print(String domain, String model, Measurement measurement) {
+		long updateAllocatedBytes = (threadBean != null) ? measurement.updateAllocatedBytes / measurement.updates : -1;
+		long evaluationAllocatedBytes = (threadBean != null)
+				? measurement.evaluationAllocatedBytes / measurement.evaluations : -1;
+
+		System.out.println(domain + "\t" + model + "\t" + measurement.updateNanoseconds / measurement.updates + "\t"
+				+ updateAllocatedBytes + "\t" + measurement.evaluationNanoseconds / measurement.evaluations + "\t"
+				+ evaluationAllocatedBytes + String.format(Locale.US, "\t(checksum %.3f)", measurement.checksum));
+	}
+}
@@ -0,0 +1,152 @@
+package boaexamplepackage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import misc.Range;
+import negotiator.Bid;
+import negotiator.DomainImpl;
+import negotiator.bidding.BidDetails;
+import negotiator.boaframework.OMStrategy;
+import negotiator.boaframework.SortedOutcomeSpace;
+import negotiator.utility.AbstractUtilitySpace;
+import negotiator.utility.AdditiveUtilitySpace;
+
+/**
+ * Compares a {@link UtilityIndex} with the {@link SortedOutcomeSpace} and the
+ * {@link OMStrategy} of the Genius on the classpath, on a profile from
+ * etc/templates. For random targets and for the utilities of the outcomes
+ * themselves, it checks that:
+ * <ul>
+ * <li>getBidNearUtility gives an outcome of the same utility,</li>
+ * <li>getBidsInRange gives the same outcomes as getBidsinRange,</li>
+ * <li>getWindow gives the same outcomes as the ones
+ * OMStrategy#getBid(SortedOutcomeSpace, double) passes to
+ * OMStrategy#getBid(List), or the same outcome if it passes none.</li>
+ * </ul>
+ * The number of mismatches of each query is printed, and the exit status is 1
+ * if there is any.
+ *
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar
+ * boaexamplepackage.UtilityIndexCheck [domain] [profile] [targets]
+ */
+public class UtilityIndexCheck {
+
+	/**
+	 * Records the window it is given and selects its first outcome.
+	 */
+	private static class RecordingStrategy extends OMStrategy {
+
+		private List<BidDetails> window;
+
+		@Override
+		public BidDetails getBid(List<BidDetails> bidsInRange) {
+			window = bidsInRange;
+			return bidsInRange.isEmpty() ? null : bidsInRange.get(0);
+		}
+
+		@Override
+		public boolean canUpdateOM() {
+			return false;
+		}
+
+		@Override
+		public String getName() {
+			return "Recording strategy";
+		}
+	}
+
+	private static int numberOfNearMismatches;
+	private static int numberOfRangeMismatches;
+	private static int numberOfWindowMismatches;
+
+	public static void main(String[] args) throws Exception {
+		String domainFile = (args.length > 0) ? args[0] : "etc/templates/partydomain/party_domain.xml";
+		String profileFile = (args.length > 1) ? args[1] : "etc/templates/partydomain/party1_utility.xml";
+		int numberOfTargets = (args.length > 2) ? Integer.parseInt(args[2]) : 10000;
+
+		AdditiveUtilitySpace utilitySpace = new AdditiveUtilitySpace(new DomainImpl(domainFile), profileFile);
+		System.exit(check(utilitySpace, numberOfTargets, new Random(42)) ? 0 : 1);
+	}
+
+	/**
+	 * @return true if the index and Genius agree on every query.
+	 */
+	static boolean check(AbstractUtilitySpace utilitySpace, int numberOfTargets, Random random) {
+		SortedOutcomeSpace outcomeSpace = new SortedOutcomeSpace(utilitySpace);
+		UtilityIndex index = new UtilityIndex(utilitySpace);
+		RecordingStrategy strategy = new RecordingStrategy();
+
+		if (!index.isComplete()) {
+			throw new IllegalArgumentException("The outcome space does not fit into the index, a sample cannot be compared");
+		}
+		if (index.size() != outcomeSpace.getAllOutcomes().size()) {
+			System.out.println("size: index " + index.size() + ", Genius " + outcomeSpace.getAllOutcomes().size());
+			return false;
+		}
+
+		List<Double> targets = new ArrayList<Double>();
+		for (BidDetails outcome : outcomeSpace.getAllOutcomes()) {
+			targets.add(outcome.getMyUndiscountedUtil());
+		}
+		for (int i = 0; i < numberOfTargets; i++) {
+			targets.add(random.nextDouble() * 1.1 - 0.05);
+		}
+
+		for (double target : targets) {
+			checkNear(outcomeSpace, index, target);
+			checkRange(outcomeSpace, index, target, target + random.nextDouble() * 0.1);
+			checkWindow(outcomeSpace, index, strategy, target);
+		}
+
+		System.out.println("outcomes\ttargets\tnear mismatches\trange mismatches\twindow mismatches");
+		System.out.println(index.size() + "\t" + targets.size() + "\t" + numberOfNearMismatches + "\t" + numberOfRangeMismatches + "\t"
+				+ numberOfWindowMismatches);
+		return numberOfNearMismatches + numberOfRangeMismatches + numberOfWindowMismatches == 0;
+	}
+
+	private static void checkNear(SortedOutcomeSpace outcomeSpace, UtilityIndex index, double target) {
+		double expected = outcomeSpace.getBidNearUtility(target).getMyUndiscountedUtil();
+		double actual = index.getBidNearUtility(target).getMyUndiscountedUtil();
+		if (expected != actual) {
+			numberOfNearMismatches++;
+			System.out.println("near " + target + ": index " + actual + ", Genius " + expected);
+		}
+	}
+
+	private static void checkRange(SortedOutcomeSpace outcomeSpace, UtilityIndex index, double lowerbound, double upperbound) {
+		if (!getBids(index.getBidsInRange(lowerbound, upperbound)).equals(getBids(outcomeSpace.getBidsinRange(new Range(lowerbound, upperbound))))) {
+			numberOfRangeMismatches++;
+			System.out.println("range [" + lowerbound + ", " + upperbound + "]: the outcomes differ");
+		}
+	}
+
+	private static void checkWindow(SortedOutcomeSpace outcomeSpace, UtilityIndex index, RecordingStrategy strategy, double target) {
+		strategy.window = null;
+		BidDetails selected = strategy.getBid(outcomeSpace, target);
+		List<BidDetails> window = index.getWindow(target);
+
+		boolean same;
+		if (strategy.window != null) {
+			same = getBids(window).equals(getBids(strategy.window));
+		} else {
+			same = window.size() == 1 && selected != null && window.get(0).getMyUndiscountedUtil() == selected.getMyUndiscountedUtil();
+		}
+		if (!same) {
+			numberOfWindowMismatches++;
+			System.out.println("window " + target + ": index " + window.size() + " outcomes, Genius "
+					+ (strategy.window != null ? strategy.window.size() + " outcomes" : "no window"));
+		}
+	}
+
+	private static Set<Bid> getBids(List<BidDetails> outcomes) {
+		Set<Bid> bids = new HashSet<Bid>();
+		for (BidDetails outcome : outcomes) {
+			bids.add(outcome.getBid());
+		}
+		return bids;
+	}
+}
@@ -0,0 +1,79 @@
+package negotiator.MadAgent;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.*;
+import negotiator.*;
+import negotiator.parties.NegotiationInfo;
+import negotiator.persistent.*;
+import negotiator.timeline.DiscreteTimeline;
+import negotiator.utility.*;
+
+/* -------------------------------- BENCHMARK SCENARIO --------------------------------
+ * Loads a domain and a profile from etc/templates (through the compiled profile cache) and creates MadAgents and scripted opponents for them.
+ * Non-linear profiles cannot be compiled, they are parsed by Genius as a NonlinearUtilitySpace every time.
+ * Opponents offer their favourite bid half of the time and a random bid otherwise, so the opponent models
+ * have something to learn and the agent goes through all of its phases.
+ * */
+public class BenchmarkScenario {
+
+	private static class StandardHistory extends ArrayList<StandardInfo> implements StandardInfoList {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private Domain domain = null;
+	private AbstractUtilitySpace utilitySpace = null;
+	private Random random = null;
+
+	public BenchmarkScenario(String domainFile, String profileFile, long seed) throws Exception {
+		if (UTILITYSPACETYPE.getUtilitySpaceType(profileFile) == UTILITYSPACETYPE.NONLINEAR)
+			utilitySpace = new NonlinearUtilitySpace(new DomainImpl(domainFile), profileFile);
+		else
+			utilitySpace = CompiledProfileCache.load(domainFile, profileFile, new File(CompiledProfileCache.DEFAULT_CACHE_DIRECTORY));
+		
+		domain = utilitySpace.getDomain();
+		random = new Random(seed);
+	}
+
+	public MadAgent createAgent(int numberOfRounds, DiscreteTimeline timeline) {
+		MadAgent agent = new MadAgent();
+
+		agent.init(new NegotiationInfo(utilitySpace, new Deadline(numberOfRounds, DeadlineType.ROUND), timeline,
+				random.nextLong(), new AgentID("MadAgent"), new DefaultPersistentDataContainer(new StandardHistory(), PersistentDataType.STANDARD)));
+
+		return agent;
+	}
+
+	/* The period of the fake bid rounds of the agent, read from the agent since it is private and may be warm-started */
+	public int getRoundNumberToFake(MadAgent agent) {
+		try {
+			Field field = MadAgent.class.getDeclaredField("roundNumberToFake");
+
+			field.setAccessible(true);
+			return field.getInt(agent);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("MadAgent has no roundNumberToFake field", e);
+		}
+	}
+
+	public Bid[] createFavouriteBids(int numberOfOpponents) {
+		Bid[] favouriteBids = new Bid[numberOfOpponents];
+
+		for (int i = 0; i < numberOfOpponents; i++)
+			favouriteBids[i] = domain.getRandomBid(random);
+
+		return favouriteBids;
+	}
+
+	public Bid getScriptedOffer(Bid favouriteBid) {
+		return (random.nextBoolean()) ? favouriteBid : domain.getRandomBid(random);
+	}
+
+	public Domain getDomain() {
+		return domain;
+	}
+
+	public AbstractUtilitySpace getUtilitySpace() {
+		return utilitySpace;
+	}
+}
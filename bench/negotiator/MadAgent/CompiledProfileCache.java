@@ -0,0 +1,288 @@
+package negotiator.MadAgent;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import javax.xml.parsers.DocumentBuilderFactory;
+import negotiator.*;
+import negotiator.issue.*;
+import negotiator.utility.*;
+import org.w3c.dom.*;
+
+/* -------------------------------- COMPILED PROFILE CACHE --------------------------------
+ * Stores a domain and a profile in a compact binary form, so a sweep parses their XML files only once.
+ * 	- The compiled file is named by the SHA-256 hash of the contents of both XML files, so a changed file never
+ * 	  hits a stale entry and the same pair under different paths shares one entry.
+ * 	- It holds the discount factor, the reservation value and, for each issue, its number, name, type and weight,
+ * 	  the discrete values with their evaluations or the bounds of the linear integer evaluator.
+ * 	- It is read through a memory-mapped buffer, and the domain and the utility space are built from it directly.
+ * 	  They are named after the files they are loaded for, as Genius names them when it parses the XML files
+ * 	  (the utility space by the path of the profile and the domain by the name of its file), since the agents and
+ * 	  the tournament results tell the profiles apart by these names.
+ * Only additive profiles with discrete and integer issues are compiled, the other ones are parsed every time.
+ * The main method is the precompile step, it compiles all the domain/profile pairs of a domain repository.
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar negotiator.MadAgent.CompiledProfileCache [domain repository] [cache directory]
+ * */
+public class CompiledProfileCache {
+
+	/* DomainImpl has no setter for its name, which is the name of its file */
+	private static class CompiledDomain extends DomainImpl {
+		private static final long serialVersionUID = 1L;
+
+		private String name = null;
+
+		private CompiledDomain(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+	}
+
+	private static class CompiledUtilitySpace extends AdditiveUtilitySpace {
+		private static final long serialVersionUID = 1L;
+
+		private CompiledUtilitySpace(Domain domain, Map<Objective, Evaluator> evaluators, String profileFile) {
+			super(domain, evaluators);
+			fileName = profileFile;
+		}
+	}
+
+	public static final String DEFAULT_CACHE_DIRECTORY = "etc/compiled";
+
+	private static final int MAGIC = 0x4D414450; // "MADP"
+	private static final int FORMAT_VERSION = 1;
+	private static final int DISCRETE = 0;
+	private static final int INTEGER = 1;
+
+	public static void main(String[] args) throws Exception {
+		String repositoryFile = (args.length > 0) ? args[0] : "domainrepository.xml";
+		File cacheDirectory = new File((args.length > 1) ? args[1] : DEFAULT_CACHE_DIRECTORY);
+
+		Document repository = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(repositoryFile));
+		NodeList domains = repository.getElementsByTagName("domainRepItem");
+		int numberOfCompiledProfiles = 0;
+		int numberOfSkippedProfiles = 0;
+
+		for (int i = 0; i < domains.getLength(); i++) {
+			Element domain = (Element) domains.item(i);
+			NodeList profiles = domain.getElementsByTagName("profile");
+
+			for (int j = 0; j < profiles.getLength(); j++) {
+				String domainFile = getPath(domain.getAttribute("url"));
+				String profileFile = getPath(((Element) profiles.item(j)).getAttribute("url"));
+
+				try {
+					if (compile(domainFile, profileFile, cacheDirectory))
+						numberOfCompiledProfiles++;
+					else
+						numberOfSkippedProfiles++;
+				} catch (Exception e) {
+					System.err.println("An exception thrown while compiling " + profileFile + "..");
+					numberOfSkippedProfiles++;
+				}
+			}
+		}
+
+		System.out.println(numberOfCompiledProfiles + " profiles are compiled into " + cacheDirectory + ", " + numberOfSkippedProfiles + " are skipped");
+	}
+
+	static String getPath(String url) {
+		return url.startsWith("file:") ? url.substring("file:".length()) : url;
+	}
+
+	/* Returns the utility space of the profile, from the compiled file if there is one, otherwise it is parsed and compiled */
+	public static AdditiveUtilitySpace load(String domainFile, String profileFile, File cacheDirectory) throws Exception {
+		File compiledFile = getCompiledFile(domainFile, profileFile, cacheDirectory);
+
+		if (compiledFile.exists())
+			return read(compiledFile, domainFile, profileFile);
+
+		AdditiveUtilitySpace utilitySpace = new AdditiveUtilitySpace(new DomainImpl(domainFile), profileFile);
+
+		if (isCompilable(utilitySpace))
+			write(utilitySpace, compiledFile);
+
+		return utilitySpace;
+	}
+
+	/* Returns false if the profile cannot be compiled */
+	public static boolean compile(String domainFile, String profileFile, File cacheDirectory) throws Exception {
+		File compiledFile = getCompiledFile(domainFile, profileFile, cacheDirectory);
+
+		if (compiledFile.exists())
+			return true;
+
+		AdditiveUtilitySpace utilitySpace = new AdditiveUtilitySpace(new DomainImpl(domainFile), profileFile);
+
+		if (!isCompilable(utilitySpace))
+			return false;
+
+		write(utilitySpace, compiledFile);
+		return true;
+	}
+
+	private static File getCompiledFile(String domainFile, String profileFile, File cacheDirectory) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		StringBuilder name = new StringBuilder();
+
+		digest.update(Files.readAllBytes(Paths.get(domainFile)));
+		digest.update((byte) 0);
+		digest.update(Files.readAllBytes(Paths.get(profileFile)));
+
+		for (byte b : digest.digest())
+			name.append(String.format("%02x", b));
+
+		return new File(cacheDirectory, name + ".bin");
+	}
+
+	private static boolean isCompilable(AdditiveUtilitySpace utilitySpace) {
+		for (Issue issue : utilitySpace.getDomain().getIssues()) {
+			Evaluator evaluator = utilitySpace.getEvaluator(issue.getNumber());
+
+			if (!(issue instanceof IssueDiscrete && evaluator instanceof EvaluatorDiscrete)
+					&& !(issue instanceof IssueInteger && evaluator instanceof EvaluatorInteger))
+				return false;
+		}
+
+		return true;
+	}
+
+	private static void write(AdditiveUtilitySpace utilitySpace, File compiledFile) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		List<Issue> issues = utilitySpace.getDomain().getIssues();
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeDouble(utilitySpace.getDiscountFactor());
+		out.writeDouble(utilitySpace.getReservationValueUndiscounted());
+		out.writeInt(issues.size());
+
+		for (Issue issue : issues) {
+			Evaluator evaluator = utilitySpace.getEvaluator(issue.getNumber());
+
+			out.writeInt(issue instanceof IssueDiscrete ? DISCRETE : INTEGER);
+			out.writeInt(issue.getNumber());
+			writeString(out, issue.getName());
+			out.writeDouble(utilitySpace.getWeight(issue.getNumber()));
+
+			if (issue instanceof IssueDiscrete) {
+				IssueDiscrete issueDiscrete = (IssueDiscrete) issue;
+
+				out.writeInt(issueDiscrete.getNumberOfValues());
+
+				/* The evaluations are stored before normalization, so the evaluator is rebuilt exactly */
+				for (ValueDiscrete value : issueDiscrete.getValues()) {
+					Double evaluation = ((EvaluatorDiscrete) evaluator).getDoubleValue(value);
+
+					writeString(out, value.getValue());
+					out.writeDouble((evaluation != null) ? evaluation : 0);
+				}
+			} else {
+				IssueInteger issueInteger = (IssueInteger) issue;
+				EvaluatorInteger evaluatorInteger = (EvaluatorInteger) evaluator;
+
+				out.writeInt(issueInteger.getLowerBound());
+				out.writeInt(issueInteger.getUpperBound());
+				out.writeInt(evaluatorInteger.getLowerBound());
+				out.writeInt(evaluatorInteger.getUpperBound());
+				out.writeDouble(evaluatorInteger.getUtilLowestValue());
+				out.writeDouble(evaluatorInteger.getUtilHighestValue());
+			}
+		}
+
+		out.flush();
+
+		/* Written to a temporary file and moved, so concurrent sessions never read a partially written file */
+		Files.createDirectories(compiledFile.getParentFile().toPath());
+		Path temporaryFile = Files.createTempFile(compiledFile.getParentFile().toPath(), "profile", ".tmp");
+
+		Files.write(temporaryFile, bytes.toByteArray());
+		Files.move(temporaryFile, compiledFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static AdditiveUtilitySpace read(File compiledFile, String domainFile, String profileFile) throws Exception {
+		ByteBuffer buffer = null;
+
+		try (FileChannel channel = FileChannel.open(compiledFile.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+			throw new IOException(compiledFile + " is not a compiled profile of this version");
+
+		double discountFactor = buffer.getDouble();
+		double reservationValue = buffer.getDouble();
+		int numberOfIssues = buffer.getInt();
+
+		Objective root = new Objective(null, "root", 0);
+		Map<Objective, Evaluator> evaluators = new LinkedHashMap<Objective, Evaluator>();
+
+		for (int i = 0; i < numberOfIssues; i++) {
+			int type = buffer.getInt();
+			int number = buffer.getInt();
+			String name = readString(buffer);
+			double weight = buffer.getDouble();
+
+			if (type == DISCRETE) {
+				String[] values = new String[buffer.getInt()];
+				double[] evaluations = new double[values.length];
+
+				for (int v = 0; v < values.length; v++) {
+					values[v] = readString(buffer);
+					evaluations[v] = buffer.getDouble();
+				}
+
+				IssueDiscrete issue = new IssueDiscrete(name, number, values, root);
+				EvaluatorDiscrete evaluator = new EvaluatorDiscrete();
+
+				for (int v = 0; v < values.length; v++)
+					evaluator.setEvaluationDouble(issue.getValue(v), evaluations[v]);
+
+				evaluator.setWeight(weight);
+				root.addChild(issue);
+				evaluators.put(issue, evaluator);
+			} else {
+				IssueInteger issue = new IssueInteger(name, number, buffer.getInt(), buffer.getInt(), root);
+				EvaluatorInteger evaluator = new EvaluatorInteger();
+
+				evaluator.setLowerBound(buffer.getInt());
+				evaluator.setUpperBound(buffer.getInt());
+				evaluator.setLinearFunction(buffer.getDouble(), buffer.getDouble());
+				evaluator.setWeight(weight);
+				root.addChild(issue);
+				evaluators.put(issue, evaluator);
+			}
+		}
+
+		DomainImpl domain = new CompiledDomain(new File(domainFile).getName());
+		domain.setObjectivesRoot(root);
+
+		AdditiveUtilitySpace utilitySpace = new CompiledUtilitySpace(domain, evaluators, profileFile);
+		utilitySpace.setDiscount(discountFactor);
+		utilitySpace.setReservationValue(reservationValue);
+
+		return utilitySpace;
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
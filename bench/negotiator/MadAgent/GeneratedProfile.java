@@ -0,0 +1,117 @@
+package negotiator.MadAgent;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/* -------------------------------- GENERATED PROFILE --------------------------------
+ * Writes an additive domain and profile with more bids than any additive one in etc/templates, in the format of the
+ * journal_learning templates: discrete issues with the same number of values, random evaluations and random weights.
+ * 	- The largest additive domains of etc/templates have 10^6 bids (journal_learning/six_issues) and 5.76 * 10^6 bids
+ * 	  (ANAC2016/AgentHp2). The larger domains there (anac/y2014, nonlinear) all have non-linear profiles.
+ * 	- The files are named after the size and the seed, and written only if they do not exist yet, so a sweep loads the
+ * 	  same profile (and its compiled form, see CompiledProfileCache) every time.
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar negotiator.MadAgent.GeneratedProfile [directory] [issues] [values] [seed]
+ * */
+public class GeneratedProfile {
+
+	public static final String DEFAULT_DIRECTORY = CompiledProfileCache.DEFAULT_CACHE_DIRECTORY + "/generated";
+
+	public static void main(String[] args) throws Exception {
+		File directory = new File((args.length > 0) ? args[0] : DEFAULT_DIRECTORY);
+		int numberOfIssues = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+		int numberOfValues = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 42;
+
+		String[] files = write(directory, numberOfIssues, numberOfValues, seed);
+		System.out.println(files[0] + "\n" + files[1]);
+	}
+
+	/* Returns the paths of the domain and the profile */
+	public static String[] write(File directory, int numberOfIssues, int numberOfValues, long seed) throws IOException {
+		String name = "additive-" + numberOfIssues + "x" + numberOfValues + "-" + seed;
+		File domainFile = new File(directory, name + "-domain.xml");
+		File profileFile = new File(directory, name + "-profile.xml");
+
+		if (!domainFile.exists() || !profileFile.exists()) {
+			Random random = new Random(seed);
+
+			write(domainFile, getDomain(numberOfIssues, numberOfValues));
+			write(profileFile, getProfile(numberOfIssues, numberOfValues, random));
+		}
+
+		return new String[] { domainFile.getPath(), profileFile.getPath() };
+	}
+
+	private static String getDomain(int numberOfIssues, int numberOfValues) {
+		StringBuilder xml = new StringBuilder();
+
+		xml.append("<negotiation_template>\n<utility_space number_of_issues=\"").append(numberOfIssues).append("\">\n");
+		xml.append("<objective index=\"0\" etype=\"objective\" type=\"objective\" description=\"\" name=\"root\">\n");
+
+		for (int i = 1; i <= numberOfIssues; i++) {
+			xml.append("<issue index=\"").append(i).append("\" etype=\"discrete\" type=\"discrete\" vtype=\"discrete\" name=\"issue").append(i).append("\">\n");
+
+			for (int v = 1; v <= numberOfValues; v++)
+				xml.append("<item index=\"").append(v).append("\" value=\"v").append(v).append("\">\n</item>\n");
+
+			xml.append("</issue>\n");
+		}
+
+		xml.append("</objective>\n</utility_space>\n</negotiation_template>\n");
+		return xml.toString();
+	}
+
+	/* The evaluations of an issue are 1, ..., numberOfValues in random order, and the weights sum to 1 */
+	private static String getProfile(int numberOfIssues, int numberOfValues, Random random) {
+		StringBuilder xml = new StringBuilder();
+		double[] weights = new double[numberOfIssues];
+		double sum = 0;
+
+		for (int i = 0; i < numberOfIssues; i++) {
+			weights[i] = 0.1 + random.nextDouble();
+			sum += weights[i];
+		}
+
+		xml.append("<utility_space>\n<objective index=\"0\" etype=\"objective\" type=\"objective\" description=\"\" name=\"root\">\n");
+
+		for (int i = 1; i <= numberOfIssues; i++) {
+			List<Integer> evaluations = new ArrayList<Integer>();
+
+			for (int v = 1; v <= numberOfValues; v++)
+				evaluations.add(v);
+
+			Collections.shuffle(evaluations, random);
+			xml.append("<issue index=\"").append(i).append("\" etype=\"discrete\" type=\"discrete\" vtype=\"discrete\" name=\"issue").append(i).append("\">\n");
+
+			for (int v = 1; v <= numberOfValues; v++)
+				xml.append("<item index=\"").append(v).append("\" value=\"v").append(v).append("\" evaluation=\"").append(evaluations.get(v - 1))
+						.append("\" cost=\"0.0\">\n</item>\n");
+
+			xml.append("</issue>\n");
+		}
+
+		/* The last weight takes the rounding error, so the weights sum to 1 exactly as written */
+		double remainder = 1;
+
+		for (int i = 1; i <= numberOfIssues; i++) {
+			double weight = (i < numberOfIssues) ? Math.round(weights[i - 1] / sum * 10000) / 10000.0 : Math.round(remainder * 10000) / 10000.0;
+
+			remainder -= weight;
+			xml.append("<weight index=\"").append(i).append("\" value=\"").append(weight).append("\">\n</weight>\n");
+		}
+
+		xml.append("</objective>\n</utility_space>\n");
+		return xml.toString();
+	}
+
+	/* Written to a temporary file and moved, as the compiled profiles are, so a concurrent reader never sees a partial file */
+	private static void write(File file, String contents) throws IOException {
+		Files.createDirectories(file.getParentFile().toPath());
+		Path temporaryFile = Files.createTempFile(file.getParentFile().toPath(), "profile", ".tmp");
+
+		Files.write(temporaryFile, contents.getBytes(StandardCharsets.UTF_8));
+		Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
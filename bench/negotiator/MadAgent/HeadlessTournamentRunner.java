@@ -0,0 +1,302 @@
+package negotiator.MadAgent;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import negotiator.*;
+import negotiator.config.*;
+import negotiator.parties.*;
+import negotiator.persistent.*;
+import negotiator.protocol.MultilateralProtocol;
+import negotiator.repository.*;
+import negotiator.session.*;
+import negotiator.tournament.SessionConfigurationList;
+import negotiator.utility.UtilitySpace;
+
+/* -------------------------------- HEADLESS TOURNAMENT RUNNER --------------------------------
+ * Runs the tournaments of a multilateraltournament.xml without the GUI, running independent sessions in parallel.
+ * 	- The sessions of each tournament are expanded by SessionConfigurationList, the list the GUI tournament uses,
+ * 	  so the party/profile combinations, repeats and repetitionAllowed are handled exactly as in the simulator.
+ * 	- Each session gets its own protocol, SessionsInfo, Session and executor, so the sessions running at the
+ * 	  same time share no state.
+ * 	- Persistent data is kept by the runner for each party and profile, and copied into the SessionsInfo of the next
+ * 	  session that uses them.
+ * 	- STANDARD persistent data (the history that MadAgent needs) is merged: a session gets the history of the sessions
+ * 	  that ended before it started, and its own entries are appended to the history of the party and profile when it
+ * 	  ends, so sessions that run at the same time lose nothing and nothing waits. The history is in the order the
+ * 	  sessions ended rather than the order of the tournament. With -Dmadagent.tournament.ordered=true a session waits
+ * 	  instead for the earlier sessions of its tournament that share a party and profile with it, so every party sees
+ * 	  its history exactly as in a sequential run.
+ * 	- SERIALIZABLE persistent data is an object of the party that cannot be merged, so those sessions always wait as above.
+ * 	- The sessions run on a fixed pool with one thread per core, and the result of each session is appended to
+ * 	  a csv file in log/ as soon as the session ends.
+ * 	- The profiles are loaded through the compiled profile cache (see CompiledProfileCache): every profile of a
+ * 	  session is replaced by one whose create() reads the compiled file, so the XML of a profile is parsed only once
+ * 	  for the whole sweep. The profiles that cannot be compiled are created by Genius as before.
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar negotiator.MadAgent.HeadlessTournamentRunner [tournament file] [threads]
+ * */
+public class HeadlessTournamentRunner {
+
+	private static final boolean ORDERED = Boolean.getBoolean("madagent.tournament.ordered");
+
+	/* The merged history of a party and profile, for STANDARD persistent data */
+	private static class StandardHistory extends ArrayList<StandardInfo> implements StandardInfoList {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/* A profile whose utility space is read from the compiled profile cache */
+	private static class CompiledProfileRepItem extends ProfileRepItem {
+
+		private CompiledProfileRepItem(ProfileRepItem profile) {
+			super(profile.getURL(), profile.getDomain());
+		}
+
+		@Override
+		public UtilitySpace create() throws RepositoryException {
+			try {
+				return CompiledProfileCache.load(CompiledProfileCache.getPath(getDomain().getURL().toString()),
+						CompiledProfileCache.getPath(getURL().toString()), new File(CompiledProfileCache.DEFAULT_CACHE_DIRECTORY));
+			} catch (Exception e) {
+				/* Not an additive profile, it is parsed by Genius */
+				return super.create();
+			}
+		}
+	}
+
+	private ExecutorService pool = null;
+	private PrintWriter writer = null;
+	private Map<String, Serializable> storages = null; // Persistent data of each party and profile, guarded by this
+	private Map<String, CompletableFuture<Void>> lastSessions = null; // Last submitted session of each party and profile
+	private AtomicInteger numberOfEndedSessions = null;
+	private int numberOfSessions = 0;
+
+	public static void main(String[] args) throws Exception {
+		String tournamentFile = (args.length > 0) ? args[0] : "multilateraltournament.xml";
+		int numberOfThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		MultilateralTournamentsConfiguration configuration = MultilateralTournamentsConfiguration.load(new File(tournamentFile));
+		File logFile = new File("log", "tournament-" + new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date()) + ".csv");
+
+		System.out.println("Running " + tournamentFile + " on " + numberOfThreads + " threads, results are written to " + logFile);
+		new HeadlessTournamentRunner(numberOfThreads, logFile).run(configuration);
+	}
+
+	public HeadlessTournamentRunner(int numberOfThreads, File logFile) throws IOException {
+		logFile.getParentFile().mkdirs();
+
+		pool = Executors.newFixedThreadPool(numberOfThreads);
+		writer = new PrintWriter(new BufferedWriter(new FileWriter(logFile)));
+		storages = new HashMap<String, Serializable>();
+		lastSessions = new HashMap<String, CompletableFuture<Void>>();
+		numberOfEndedSessions = new AtomicInteger();
+	}
+
+	public void run(MultilateralTournamentsConfiguration configuration) {
+		List<MultilateralTournamentConfiguration> tournaments = configuration.getTournaments();
+		List<SessionConfigurationList> sessionLists = new ArrayList<SessionConfigurationList>();
+		List<CompletableFuture<Void>> sessions = new ArrayList<CompletableFuture<Void>>();
+		int maximumNumberOfParties = 0;
+
+		for (MultilateralTournamentConfiguration tournament : tournaments) {
+			SessionConfigurationList sessionList = new SessionConfigurationList(tournament);
+
+			sessionLists.add(sessionList);
+			numberOfSessions += sessionList.size().intValue();
+			maximumNumberOfParties = Math.max(maximumNumberOfParties, tournament.getNumPartiesPerSession() + (tournament.getMediator() != null ? 1 : 0));
+		}
+
+		writeHeader(maximumNumberOfParties);
+
+		for (int t = 0; t < tournaments.size(); t++)
+			for (int s = 0; s < sessionLists.get(t).size().intValue(); s++)
+				sessions.add(submit(t, s, sessionLists.get(t).get(BigInteger.valueOf(s))));
+
+		try {
+			CompletableFuture.allOf(sessions.toArray(new CompletableFuture<?>[sessions.size()])).join();
+		} finally {
+			pool.shutdown();
+			writer.close();
+		}
+	}
+
+	private CompletableFuture<Void> submit(final int tournament, final int sessionNumber, final SessionConfiguration configuration) {
+		List<CompletableFuture<Void>> previousSessions = new ArrayList<CompletableFuture<Void>>();
+
+		if (isOrdered(configuration))
+			for (Participant participant : getParticipants(configuration))
+				if (lastSessions.containsKey(getStorageKey(tournament, participant)))
+					previousSessions.add(lastSessions.get(getStorageKey(tournament, participant)));
+
+		/* The sessions never complete exceptionally, errors are written to the log as the result of the session */
+		CompletableFuture<Void> session = CompletableFuture.allOf(previousSessions.toArray(new CompletableFuture<?>[previousSessions.size()]))
+				.thenRunAsync(new Runnable() {
+					@Override
+					public void run() {
+						runSession(tournament, sessionNumber, configuration);
+					}
+				}, pool);
+
+		if (isOrdered(configuration))
+			for (Participant participant : getParticipants(configuration))
+				lastSessions.put(getStorageKey(tournament, participant), session);
+
+		return session;
+	}
+
+	/* True if the session waits for the earlier sessions of its parties and profiles */
+	private boolean isOrdered(SessionConfiguration configuration) {
+		switch (configuration.getPersistentDataType()) {
+		case DISABLED:
+			return false;
+		case STANDARD:
+			return ORDERED;
+		default:
+			return true;
+		}
+	}
+
+	private void runSession(int tournament, int sessionNumber, SessionConfiguration configuration) {
+		SessionsInfo info = null;
+		String result = null;
+
+		try {
+			MultilateralProtocol protocol = TournamentManager.getProtocol(configuration.getProtocol());
+			info = new SessionsInfo(protocol, configuration.getPersistentDataType(), false);
+			Map<String, Integer> restoredSizes = restoreStorages(tournament, configuration, info);
+
+			Session session = new Session(configuration.getDeadline(), info);
+			ExecutorWithTimeout executor = new ExecutorWithTimeout(1000L * configuration.getDeadline().getTimeOrDefaultTimeout());
+			List<NegotiationPartyInternal> parties = TournamentManager.getPartyList(executor, withCompiledProfiles(configuration), info, session);
+
+			new SessionManager(parties, session, executor).runAndWait();
+			saveStorages(tournament, configuration, info, restoredSizes);
+
+			result = getResult(protocol, session, parties);
+		} catch (Exception e) {
+			System.err.println("An exception thrown while running session " + sessionNumber + " of tournament " + tournament + "..");
+			result = ("error: " + e).replace(',', ';');
+		} finally {
+			if (info != null)
+				info.close();
+		}
+
+		write(tournament + "," + sessionNumber + "," + result);
+		System.out.println("Session " + numberOfEndedSessions.incrementAndGet() + "/" + numberOfSessions + " has ended..");
+	}
+
+	private String getResult(MultilateralProtocol protocol, Session session, List<NegotiationPartyInternal> parties) {
+		List<NegotiationParty> negotiationParties = new ArrayList<NegotiationParty>();
+
+		for (NegotiationPartyInternal party : parties)
+			negotiationParties.add(party.getParty());
+
+		Bid agreement = protocol.getCurrentAgreement(session, negotiationParties);
+		StringBuilder result = new StringBuilder();
+
+		result.append(String.format(Locale.US, "%.3f", session.getRuntimeInSeconds())).append(',').append(session.getRoundNumber())
+				.append(',').append(agreement != null).append(',').append(protocol.getNumberOfAgreeingParties(session, negotiationParties));
+
+		for (NegotiationPartyInternal party : parties) {
+			result.append(',').append(party.getID()).append(',').append(party.getUtilitySpace().getName());
+			result.append(',').append(agreement != null ? party.getUtility(agreement) : 0);
+			result.append(',').append(agreement != null ? party.getUtilityWithDiscount(agreement) : 0);
+		}
+
+		return result.toString();
+	}
+
+	/* The same session with the profiles of the participants loaded through the compiled profile cache */
+	private SessionConfiguration withCompiledProfiles(SessionConfiguration configuration) {
+		List<Participant> parties = new ArrayList<Participant>();
+
+		for (Participant party : configuration.getParties())
+			parties.add(withCompiledProfile(party));
+
+		return new SessionConfiguration(configuration.getProtocol(), withCompiledProfile(configuration.getMediator()), parties,
+				configuration.getDeadline(), configuration.getPersistentDataType());
+	}
+
+	private Participant withCompiledProfile(Participant participant) {
+		if (participant == null || participant.getProfile() == null)
+			return participant;
+
+		return new Participant(participant.getId(), participant.getStrategy(), new CompiledProfileRepItem(participant.getProfile()));
+	}
+
+	private List<Participant> getParticipants(SessionConfiguration configuration) {
+		List<Participant> participants = new ArrayList<Participant>(configuration.getParties());
+
+		if (configuration.getMediator() != null)
+			participants.add(configuration.getMediator());
+
+		return participants;
+	}
+
+	/* Persistent data belongs to a party and a profile within one tournament, as in the GUI tournament */
+	private String getStorageKey(int tournament, Participant participant) {
+		return tournament + ":" + participant.getStrategy().getUniqueName() + ":" + participant.getProfile().getFullName();
+	}
+
+	/* Returns the number of entries of the STANDARD history restored for each party and profile */
+	private synchronized Map<String, Integer> restoreStorages(int tournament, SessionConfiguration configuration, SessionsInfo info) throws IOException {
+		Map<String, Integer> restoredSizes = new HashMap<String, Integer>();
+
+		if (configuration.getPersistentDataType() == PersistentDataType.DISABLED)
+			return restoredSizes;
+
+		for (Participant participant : getParticipants(configuration)) {
+			Serializable storage = storages.get(getStorageKey(tournament, participant));
+
+			if (storage != null)
+				info.saveStorage(storage, participant.getStrategy(), participant.getProfile());
+
+			restoredSizes.put(getStorageKey(tournament, participant), (storage instanceof List) ? ((List<?>) storage).size() : 0);
+		}
+
+		return restoredSizes;
+	}
+
+	private synchronized void saveStorages(int tournament, SessionConfiguration configuration, SessionsInfo info, Map<String, Integer> restoredSizes)
+			throws Exception {
+		if (configuration.getPersistentDataType() == PersistentDataType.DISABLED)
+			return;
+
+		for (Participant participant : getParticipants(configuration)) {
+			String key = getStorageKey(tournament, participant);
+			Serializable storage = info.getStorage(participant.getStrategy(), participant.getProfile());
+
+			if (configuration.getPersistentDataType() == PersistentDataType.STANDARD && storage instanceof StandardInfoList)
+				storage = merge((StandardInfoList) storages.get(key), (StandardInfoList) storage, restoredSizes.get(key));
+
+			storages.put(key, storage);
+		}
+	}
+
+	/* The stored history followed by the entries the session added after the ones it was given */
+	private StandardHistory merge(StandardInfoList storedHistory, StandardInfoList sessionHistory, int restoredSize) {
+		StandardHistory history = new StandardHistory();
+
+		if (storedHistory != null)
+			history.addAll(storedHistory);
+
+		history.addAll(sessionHistory.subList(Math.min(restoredSize, sessionHistory.size()), sessionHistory.size()));
+		return history;
+	}
+
+	private void writeHeader(int numberOfParties) {
+		StringBuilder header = new StringBuilder("tournament,session,runtime,rounds,agreement,agreeing parties");
+
+		for (int i = 1; i <= numberOfParties; i++)
+			header.append(",party ").append(i).append(",profile ").append(i).append(",utility ").append(i).append(",discounted utility ").append(i);
+
+		write(header.toString());
+	}
+
+	private synchronized void write(String line) {
+		writer.println(line);
+		writer.flush();
+	}
+}
@@ -0,0 +1,73 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- LAZY SORTED OUTCOME SPACE CHECK --------------------------------
+ * Compares a LazySortedOutcomeSpace with the fully enumerated EnumeratedOutcomeSpace of an additive profile:
+ * 	- getBidNearUtility of a fresh lazy outcome space must give a bid of the same utility for random targets,
+ * 	- walking the lazy outcome space to its end must give every bid once, in descending order of utility.
+ * The number of mismatches is printed, and the exit status is 1 if there is any.
+ * The profile must be small enough to be enumerated (the default has 6^4 bids).
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar negotiator.MadAgent.LazySortedOutcomeSpaceCheck [domain] [profile] [targets] [seed]
+ * */
+public class LazySortedOutcomeSpaceCheck {
+
+	public static void main(String[] args) throws Exception {
+		String domainFile = (args.length > 0) ? args[0] : "etc/templates/partydomain/party_domain.xml";
+		String profileFile = (args.length > 1) ? args[1] : "etc/templates/partydomain/party1_utility.xml";
+		int numberOfTargets = (args.length > 2) ? Integer.parseInt(args[2]) : 10000;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 42;
+
+		BenchmarkScenario scenario = new BenchmarkScenario(domainFile, profileFile, seed);
+		UtilityEvaluator utilityEvaluator = new UtilityEvaluator(scenario.getUtilitySpace(), new BidEncoder(scenario.getDomain()));
+
+		System.exit(check(utilityEvaluator, numberOfTargets, new Random(seed)) ? 0 : 1);
+	}
+
+	/* Returns true if the lazy and the enumerated outcome spaces agree on every query */
+	static boolean check(UtilityEvaluator utilityEvaluator, int numberOfTargets, Random random) {
+		BidEncoder bidEncoder = utilityEvaluator.getBidEncoder();
+		EnumeratedOutcomeSpace enumeratedOutcomeSpace = new EnumeratedOutcomeSpace(utilityEvaluator);
+		LazySortedOutcomeSpace lazySortedOutcomeSpace = new LazySortedOutcomeSpace(utilityEvaluator);
+		int nearMismatches = 0;
+		int orderMismatches = 0;
+
+		/* The targets come in random order, so some are answered from the bids walked already and some walk further */
+		double[] targets = new double[numberOfTargets];
+
+		for (int t = 0; t < numberOfTargets; t++)
+			targets[t] = random.nextDouble() * 1.1 - 0.05;
+
+		for (int t = 0; t < numberOfTargets; t++) {
+			double expected = utilityEvaluator.getUtility(enumeratedOutcomeSpace.getBidNearUtility(targets[t]));
+			double actual = utilityEvaluator.getUtility(lazySortedOutcomeSpace.getBidNearUtility(targets[t]));
+
+			if (expected != actual) {
+				nearMismatches++;
+				System.out.println("near " + targets[t] + ": lazy " + actual + ", enumerated " + expected);
+			}
+		}
+
+		Set<Long> walkedKeys = new HashSet<Long>();
+		int rank = 0;
+
+		for (; lazySortedOutcomeSpace.getBid(rank) != null; rank++) {
+			int[] bid = lazySortedOutcomeSpace.getBid(rank);
+			boolean descending = rank == 0 || lazySortedOutcomeSpace.getUtility(rank) <= lazySortedOutcomeSpace.getUtility(rank - 1);
+
+			if (!walkedKeys.add(bidEncoder.getKey(bid)) || !descending || lazySortedOutcomeSpace.getUtility(rank) != utilityEvaluator.getUtility(bid)) {
+				orderMismatches++;
+				System.out.println("rank " + rank + ": repeated, out of order or with a wrong utility");
+			}
+		}
+
+		if (rank != enumeratedOutcomeSpace.size()) {
+			orderMismatches++;
+			System.out.println("size: lazy " + rank + ", enumerated " + enumeratedOutcomeSpace.size());
+		}
+
+		System.out.println("bids\ttargets\tnear mismatches\torder mismatches");
+		System.out.println(enumeratedOutcomeSpace.size() + "\t" + numberOfTargets + "\t" + nearMismatches + "\t" + orderMismatches);
+		return nearMismatches + orderMismatches == 0;
+	}
+}
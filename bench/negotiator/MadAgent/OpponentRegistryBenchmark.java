@@ -0,0 +1,69 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+import negotiator.*;
+import negotiator.actions.*;
+import negotiator.timeline.DiscreteTimeline;
+
+/* -------------------------------- OPPONENT REGISTRY BENCHMARK --------------------------------
+ * Measures the cost of one turn (the offers of all the other parties plus our chooseAction) as the number of
+ * parties in the session grows from 3 to 10.
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar negotiator.MadAgent.OpponentRegistryBenchmark [domain] [profile] [rounds]
+ * */
+public class OpponentRegistryBenchmark {
+
+	private static final int MINIMUM_NUMBER_OF_PARTIES = 3;
+	private static final int MAXIMUM_NUMBER_OF_PARTIES = 10;
+	private static final int NUMBER_OF_WARMUP_SESSIONS = 3;
+
+	public static void main(String[] args) throws Exception {
+		String domainFile = (args.length > 0) ? args[0] : "etc/templates/partydomain/party_domain.xml";
+		String profileFile = (args.length > 1) ? args[1] : "etc/templates/partydomain/party1_utility.xml";
+		int numberOfRounds = (args.length > 2) ? Integer.parseInt(args[2]) : 2000;
+
+		BenchmarkScenario scenario = new BenchmarkScenario(domainFile, profileFile, 42);
+
+		for (int i = 0; i < NUMBER_OF_WARMUP_SESSIONS; i++)
+			runSession(scenario, MAXIMUM_NUMBER_OF_PARTIES, numberOfRounds);
+
+		System.out.println("parties\tns/turn");
+
+		for (int parties = MINIMUM_NUMBER_OF_PARTIES; parties <= MAXIMUM_NUMBER_OF_PARTIES; parties++)
+			System.out.println(parties + "\t" + runSession(scenario, parties, numberOfRounds));
+	}
+
+	/* Returns the average nanoseconds per turn */
+	private static long runSession(BenchmarkScenario scenario, int numberOfParties, int numberOfRounds) {
+		DiscreteTimeline timeline = new DiscreteTimeline(numberOfRounds);
+		MadAgent agent = scenario.createAgent(numberOfRounds, timeline);
+
+		int numberOfOpponents = numberOfParties - 1;
+		AgentID[] opponentIds = new AgentID[numberOfOpponents];
+		Bid[] favouriteBids = scenario.createFavouriteBids(numberOfOpponents);
+		List<Class<? extends Action>> validActions = Arrays.<Class<? extends Action>> asList(Accept.class, Offer.class);
+
+		for (int i = 0; i < numberOfOpponents; i++)
+			opponentIds[i] = new AgentID("Opponent" + i);
+
+		Offer[] offers = new Offer[numberOfOpponents];
+		long totalTime = 0;
+
+		for (int round = 0; round < numberOfRounds; round++) {
+			/* The offers are created before the measurement, only the agent's work is measured */
+			for (int i = 0; i < numberOfOpponents; i++)
+				offers[i] = new Offer(opponentIds[i], scenario.getScriptedOffer(favouriteBids[i]));
+
+			long start = System.nanoTime();
+
+			for (int i = 0; i < numberOfOpponents; i++)
+				agent.receiveMessage(opponentIds[i], offers[i]);
+
+			agent.chooseAction(validActions);
+			totalTime += System.nanoTime() - start;
+
+			timeline.increment();
+		}
+
+		return totalTime / numberOfRounds;
+	}
+}
@@ -0,0 +1,70 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- SEEN BIDS FALSE POSITIVE RATE --------------------------------
+ * Measures the false positive rate of SeenBids once it has moved to its Bloom filter:
+ * 	- adds a number of distinct random bids of the domain, and checks that every one of them is still reported as seen,
+ * 	- then queries as many other distinct random bids, none of them added, and counts the ones reported as seen.
+ * The domain must have many more bids than twice the number of bids (the default has 7^8), or the random bids repeat too much.
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar negotiator.MadAgent.SeenBidsFalsePositiveRate [domain] [profile] [bids] [seed]
+ * */
+public class SeenBidsFalsePositiveRate {
+
+	public static void main(String[] args) throws Exception {
+		String domainFile = (args.length > 0) ? args[0] : "etc/templates/ANAC2016/AgentHp2/energy_grid_domain.xml";
+		String profileFile = (args.length > 1) ? args[1] : "etc/templates/ANAC2016/AgentHp2/consumer.xml";
+		int numberOfBids = (args.length > 2) ? Integer.parseInt(args[2]) : 100000;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 42;
+
+		BenchmarkScenario scenario = new BenchmarkScenario(domainFile, profileFile, seed);
+		run(new BidEncoder(scenario.getDomain()), numberOfBids, new Random(seed));
+	}
+
+	static void run(BidEncoder bidEncoder, int numberOfBids, Random random) {
+		if (bidEncoder.getNumberOfBids() < 4.0 * numberOfBids)
+			throw new IllegalArgumentException("The domain has " + bidEncoder.getNumberOfBids() + " bids, too few for " + numberOfBids + " random bids");
+
+		/* The exact keys of the drawn bids, so the added and the queried bids are disjoint */
+		Set<Long> drawnKeys = new HashSet<Long>();
+		int[][] addedBids = drawDistinctBids(bidEncoder, random, drawnKeys, numberOfBids);
+		int[][] queriedBids = drawDistinctBids(bidEncoder, random, drawnKeys, numberOfBids);
+
+		SeenBids seenBids = new SeenBids(bidEncoder);
+
+		for (int[] bid : addedBids)
+			seenBids.add(bid);
+
+		int falseNegatives = 0;
+		int falsePositives = 0;
+
+		for (int[] bid : addedBids)
+			if (!seenBids.contains(bid))
+				falseNegatives++;
+
+		for (int[] bid : queriedBids)
+			if (seenBids.contains(bid))
+				falsePositives++;
+
+		System.out.println("bids\texact\tsize\tfalse negatives\tfalse positives\trate");
+		System.out.println(numberOfBids + "\t" + seenBids.isExact() + "\t" + seenBids.size() + "\t" + falseNegatives + "\t" + falsePositives + "\t"
+				+ String.format(Locale.ROOT, "%.4f%%", 100.0 * falsePositives / numberOfBids));
+	}
+
+	private static int[][] drawDistinctBids(BidEncoder bidEncoder, Random random, Set<Long> drawnKeys, int numberOfBids) {
+		int[][] bids = new int[numberOfBids][];
+		int count = 0;
+
+		while (count < numberOfBids) {
+			int[] bid = new int[bidEncoder.getNumberOfIssues()];
+
+			for (int i = 0; i < bid.length; i++)
+				bid[i] = random.nextInt(bidEncoder.getNumberOfValues(i));
+
+			if (drawnKeys.add(bidEncoder.getKey(bid)))
+				bids[count++] = bid;
+		}
+
+		return bids;
+	}
+}
@@ -0,0 +1,181 @@
+package negotiator.MadAgent;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import negotiator.*;
+import negotiator.actions.*;
+import negotiator.timeline.DiscreteTimeline;
+import org.openjdk.jmh.annotations.*;
+
+/* -------------------------------- TURN LATENCY BENCHMARK --------------------------------
+ * Drives MadAgent.receiveMessage and chooseAction directly with scripted opponent offers, over profiles of
+ * different sizes from etc/templates (from 3072 to 5.76 * 10^6 additive bids, and a non-linear profile of 10^50 bids) and
+ * over a generated additive profile of 10^8 bids, and measures:
+ * 	- init: the time of creating and initializing an agent for the profile.
+ * 	- turn: the time of one turn (the offers of the opponents plus our chooseAction), separately for each phase of the agent:
+ * 	  early (first 5%), fake (fake bid rounds), normal, almostMad (after 50%) and mad (after 80%).
+ * The session of a turn is played up to the first round of its phase outside the measurement, and it is restarted once it
+ * leaves the phase, so every measured turn is a turn of its phase. The offers are created outside the measurement too.
+ * Allocations are reported per turn by the gc profiler (-prof gc).
+ * Usage: java -cp bench/target/benchmarks.jar:negosimulator.jar org.openjdk.jmh.Main TurnLatencyBenchmark [-p profile=...] [-prof gc]
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TurnLatencyBenchmark {
+
+	private static final Map<String, String[]> PROFILES = new LinkedHashMap<String, String[]>();
+
+	static {
+		PROFILES.put("partydomain", new String[] { "etc/templates/partydomain/party_domain.xml", "etc/templates/partydomain/party1_utility.xml" });
+		PROFILES.put("WindFarm", new String[] { "etc/templates/ANAC2016/Maxoops/WindFarm.xml", "etc/templates/ANAC2016/Maxoops/WindFarm_util1.xml" });
+		PROFILES.put("parsCat", new String[] { "etc/templates/ANAC2016/parsCat/domain.xml", "etc/templates/ANAC2016/parsCat/profile1.xml" });
+		PROFILES.put("AgentHp2", new String[] { "etc/templates/ANAC2016/AgentHp2/energy_grid_domain.xml", "etc/templates/ANAC2016/AgentHp2/consumer.xml" });
+		PROFILES.put("four_issues", new String[] { "etc/templates/journal_learning/four_issues/four_issues.xml", "etc/templates/journal_learning/four_issues/a_n_u_u.xml" });
+		PROFILES.put("six_issues", new String[] { "etc/templates/journal_learning/six_issues/six_issues.xml", "etc/templates/journal_learning/six_issues/a_n_u_d.xml" });
+		PROFILES.put("S-1NAGUNL-255", new String[] { "etc/templates/nonlinear/S-1NAGUNL-255/S-1NAGUNL-255-domain.xml", "etc/templates/nonlinear/S-1NAGUNL-255/profile-1.xml" });
+	}
+
+	/* Written by GeneratedProfile: 8 issues of 10 values, 10^8 bids, as no additive profile of etc/templates has more than 5.76 * 10^6 */
+	private static final String GENERATED_PROFILE = "eight_issues";
+
+	private static final String[] PHASES = { "early", "fake", "normal", "almostMad", "mad" };
+	private static final int NUMBER_OF_OPPONENTS = 2;
+
+	/* -------------------------------- FIXTURES -------------------------------- */
+	@State(Scope.Thread)
+	public static class Profile {
+
+		@Param({ "partydomain", "WindFarm", "parsCat", "AgentHp2", "four_issues", "six_issues", "eight_issues", "S-1NAGUNL-255" })
+		public String profile;
+
+		@Param({ "10000" })
+		public int numberOfRounds;
+
+		BenchmarkScenario scenario = null;
+
+		@Setup(Level.Trial)
+		public void load() throws Exception {
+			String[] files = PROFILES.get(profile);
+
+			if (profile.equals(GENERATED_PROFILE))
+				files = GeneratedProfile.write(new File(GeneratedProfile.DEFAULT_DIRECTORY), 8, 10, 42);
+
+			if (files == null)
+				throw new IllegalArgumentException("Unknown profile " + profile + ", expected one of " + PROFILES.keySet() + " or " + GENERATED_PROFILE);
+
+			scenario = new BenchmarkScenario(files[0], files[1], 42);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Session {
+
+		@Param({ "early", "fake", "normal", "almostMad", "mad" })
+		public String phase;
+
+		private int phaseIndex = 0;
+		private int numberOfRounds = 0;
+		private BenchmarkScenario scenario = null;
+		private DiscreteTimeline timeline = null;
+		private MadAgent agent = null;
+		private int roundNumberToFake = 0;
+		private int round = 0;
+		private AgentID[] opponentIds = new AgentID[NUMBER_OF_OPPONENTS];
+		private Bid[] favouriteBids = null;
+		private Offer[] offers = new Offer[NUMBER_OF_OPPONENTS];
+		private List<Class<? extends Action>> validActions = Arrays.<Class<? extends Action>> asList(Accept.class, Offer.class);
+
+		@Setup(Level.Trial)
+		public void prepare(Profile profile) {
+			phaseIndex = Arrays.asList(PHASES).indexOf(phase);
+			numberOfRounds = profile.numberOfRounds;
+			scenario = profile.scenario;
+
+			if (phaseIndex < 0)
+				throw new IllegalArgumentException("Unknown phase " + phase + ", expected one of " + Arrays.toString(PHASES));
+
+			for (int i = 0; i < NUMBER_OF_OPPONENTS; i++)
+				opponentIds[i] = new AgentID("Opponent" + i);
+
+			start();
+		}
+
+		/* Runs before every turn and is not measured, the offers of the turn are created here */
+		@Setup(Level.Invocation)
+		public void nextTurn() {
+			if (getPhase(round) != phaseIndex)
+				advance();
+
+			for (int i = 0; i < NUMBER_OF_OPPONENTS; i++)
+				offers[i] = new Offer(opponentIds[i], scenario.getScriptedOffer(favouriteBids[i]));
+		}
+
+		@TearDown(Level.Invocation)
+		public void endTurn() {
+			timeline.increment();
+			round++;
+		}
+
+		private void start() {
+			timeline = new DiscreteTimeline(numberOfRounds);
+			agent = scenario.createAgent(numberOfRounds, timeline);
+			roundNumberToFake = scenario.getRoundNumberToFake(agent);
+			favouriteBids = scenario.createFavouriteBids(NUMBER_OF_OPPONENTS);
+			round = 1;
+		}
+
+		/* Plays the session up to the next round of the phase, in a new session if there is none before the deadline */
+		private void advance() {
+			for (int attempt = 0; attempt < 2; attempt++) {
+				while (round <= numberOfRounds && getPhase(round) != phaseIndex) {
+					for (int i = 0; i < NUMBER_OF_OPPONENTS; i++)
+						agent.receiveMessage(opponentIds[i], new Offer(opponentIds[i], scenario.getScriptedOffer(favouriteBids[i])));
+
+					agent.chooseAction(validActions);
+					timeline.increment();
+					round++;
+				}
+
+				if (round <= numberOfRounds)
+					return;
+
+				start();
+			}
+
+			throw new IllegalStateException("A session of " + numberOfRounds + " rounds has no " + phase + " round");
+		}
+
+		/* The same conditions as MadAgent.getBestBidPossible and calculateCurrentThreshold, for a round limited negotiation */
+		private int getPhase(int round) {
+			if (round <= numberOfRounds * 0.05)
+				return 0;
+			if (round % roundNumberToFake <= 10 && round <= numberOfRounds * 0.9)
+				return 1;
+			if (round > numberOfRounds * 0.8)
+				return 4;
+			if (round > numberOfRounds * 0.5)
+				return 3;
+
+			return 2;
+		}
+	}
+
+	/* -------------------------------- BENCHMARKS -------------------------------- */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public MadAgent init(Profile profile) {
+		return profile.scenario.createAgent(profile.numberOfRounds, new DiscreteTimeline(profile.numberOfRounds));
+	}
+
+	@Benchmark
+	public Action turn(Session session) {
+		for (int i = 0; i < NUMBER_OF_OPPONENTS; i++)
+			session.agent.receiveMessage(session.opponentIds[i], session.offers[i]);
+
+		return session.agent.chooseAction(session.validActions);
+	}
+}
@@ -1,11 +1,17 @@
 package boaexamplepackage;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import negotiator.Bid;
 import negotiator.bidding.BidDetails;
 import negotiator.boaframework.BOAparameter;
 import negotiator.boaframework.NegotiationSession;
@@ -17,6 +23,11 @@ import negotiator.boaframework.OpponentModel;
  * while taking the opponent's preferences into account. The opponent model is
  * used to select the best bid.
  * 
+ * If the opponent model is a {@link WeightTableModel}, the candidates are
+ * encoded once and scored against its {@link WeightTable} in a primitive loop,
+ * in parallel for large windows. The result of a window is reused as long as
+ * the same window is given and the table has not changed.
+ * 
  */
 public class BestBid extends OMStrategy {
 
@@ -26,6 +37,18 @@ public class BestBid extends OMStrategy {
 	 */
 	double updateThreshold = 1.1;
 
+	/** number of candidates from which they are scored in parallel */
+	private static final int PARALLEL_CUTOFF = 4096;
+	/** maximum number of encoded bids kept, the cache is cleared when full */
+	private static final int MAXIMUM_ENCODED_BIDS = 100000;
+
+	private Random random = new Random();
+	/** the candidates are usually the same bid objects in every turn */
+	private Map<Bid, int[]> encodedBids = new IdentityHashMap<Bid, int[]>();
+	private BidDetails[] lastWindow;
+	private long lastTableVersion = -1;
+	private BidDetails lastBestBid;
+
 	/**
 	 * Initializes the opponent model strategy. If a value for the parameter t
 	 * is given, then it is set to this value. Otherwise, the default value is
@@ -64,6 +87,20 @@ public class BestBid extends OMStrategy {
 		if (allBids.size() == 1) {
 			return allBids.get(0);
 		}
+		WeightTable table = (model instanceof WeightTableModel) ? ((WeightTableModel) model).getWeightTable() : null;
+		if (table != null) {
+			BidDetails bestBid = getBidByTable(allBids, table);
+			if (bestBid != null) {
+				return bestBid;
+			}
+		}
+		return getBidByEvaluation(allBids);
+	}
+
+	/**
+	 * Scores the bids one by one with the opponent model.
+	 */
+	private BidDetails getBidByEvaluation(List<BidDetails> allBids) {
 		double bestUtil = -1;
 		BidDetails bestBid = allBids.get(0);
 
@@ -84,12 +121,114 @@ public class BestBid extends OMStrategy {
 		}
 		// 4. The opponent model did not work, therefore, offer a random bid.
 		if (allWereZero) {
-			Random r = new Random();
-			return allBids.get(r.nextInt(allBids.size()));
+			return allBids.get(random.nextInt(allBids.size()));
 		}
 		return bestBid;
 	}
 
+	/**
+	 * Scores the bids with the weight table, with the same result as
+	 * {@link #getBidByEvaluation(List)}: the first bid with the highest
+	 * evaluation, or a random bid if all the evaluations are about 0.
+	 * 
+	 * @return the best bid, or null if a bid cannot be encoded.
+	 */
+	private BidDetails getBidByTable(List<BidDetails> allBids, WeightTable table) {
+		if (isLastWindow(allBids, table.getVersion())) {
+			return lastBestBid;
+		}
+		int[][] encoded = new int[allBids.size()][];
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = encode(allBids.get(i).getBid(), table);
+			if (encoded[i] == null) {
+				return null;
+			}
+		}
+		int best = (encoded.length >= PARALLEL_CUTOFF) ? findBestInParallel(encoded, table)
+				: findBest(encoded, table, 0, encoded.length);
+		if (table.getEvaluation(encoded[best]) <= 0.0001) {
+			// the opponent model did not work, a random bid is not cached
+			lastWindow = null;
+			return allBids.get(random.nextInt(allBids.size()));
+		}
+		lastWindow = allBids.toArray(new BidDetails[allBids.size()]);
+		lastTableVersion = table.getVersion();
+		lastBestBid = allBids.get(best);
+		return lastBestBid;
+	}
+
+	private boolean isLastWindow(List<BidDetails> allBids, long tableVersion) {
+		if (lastWindow == null || lastTableVersion != tableVersion || lastWindow.length != allBids.size()) {
+			return false;
+		}
+		for (int i = 0; i < lastWindow.length; i++) {
+			if (lastWindow[i] != allBids.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int[] encode(Bid bid, WeightTable table) {
+		int[] encodedBid = encodedBids.get(bid);
+		if (encodedBid == null) {
+			if (encodedBids.size() >= MAXIMUM_ENCODED_BIDS) {
+				encodedBids.clear();
+			}
+			encodedBid = table.encode(bid);
+			encodedBids.put(bid, encodedBid);
+		}
+		return encodedBid;
+	}
+
+	/**
+	 * @return index of the first bid with the highest evaluation in [from, to).
+	 */
+	private static int findBest(int[][] encoded, WeightTable table, int from, int to) {
+		int best = from;
+		double bestEvaluation = -1;
+		for (int i = from; i < to; i++) {
+			double evaluation = table.getEvaluation(encoded[i]);
+			if (evaluation > bestEvaluation) {
+				best = i;
+				bestEvaluation = evaluation;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Splits the bids in a chunk per processor. The chunks are combined in
+	 * order, so the first best bid is still chosen on ties.
+	 */
+	private static int findBestInParallel(final int[][] encoded, final WeightTable table) {
+		int numberOfChunks = Runtime.getRuntime().availableProcessors();
+		int chunkSize = (encoded.length + numberOfChunks - 1) / numberOfChunks;
+		List<Callable<Integer>> chunks = new ArrayList<Callable<Integer>>();
+		for (int from = 0; from < encoded.length; from += chunkSize) {
+			final int chunkFrom = from;
+			final int chunkTo = Math.min(from + chunkSize, encoded.length);
+			chunks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return findBest(encoded, table, chunkFrom, chunkTo);
+				}
+			});
+		}
+		try {
+			int best = 0;
+			for (Future<Integer> chunk : ForkJoinPool.commonPool().invokeAll(chunks)) {
+				int index = chunk.get();
+				if (table.getEvaluation(encoded[index]) > table.getEvaluation(encoded[best])) {
+					best = index;
+				}
+			}
+			return best;
+		} catch (Exception e) {
+			return findBest(encoded, table, 0, encoded.length);
+		}
+	}
+
 	/**
 	 * The opponent model may be updated, unless the time is higher than a given
 	 * constant.
@@ -0,0 +1,224 @@
+package boaexamplepackage;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import negotiator.Bid;
+import negotiator.bidding.BidDetails;
+import negotiator.boaframework.BOAparameter;
+import negotiator.boaframework.NegotiationSession;
+import negotiator.boaframework.OpponentModel;
+import negotiator.issue.Issue;
+import negotiator.issue.IssueDiscrete;
+import negotiator.utility.AbstractUtilitySpace;
+import negotiator.utility.AdditiveUtilitySpace;
+import negotiator.utility.EvaluatorDiscrete;
+
+/**
+ * Variant of the {@link HardHeadedFrequencyModel} which keeps the model in
+ * primitive arrays indexed by issue and value, in the order of the domain. The
+ * issue weights are a double[] and the value counts an int[][], and an offer
+ * updates them in place without allocating.
+ *
+ * The learning rules are the same as in the HardHeaded Frequency Model: the
+ * weights of the issues whose value did not change since the previous offer
+ * grow by the learning coefficient, and the count of each offered value grows
+ * by one. The evaluation of a value is its count divided by the highest count
+ * of its issue. The only difference is the normalization of the weights:
+ * {@link AdditiveUtilitySpace#setWeight} renormalizes all the weights after
+ * every single weight is set, here they are normalized once per offer.
+ *
+ * The {@link AdditiveUtilitySpace} of the opponent is built only when it is
+ * requested through {@link #getOpponentUtilitySpace()}.
+ *
+ * Default: learning coef l = 0.2; learnValueAddition v = 1.0
+ */
+public class HardHeadedArrayFrequencyModel extends OpponentModel implements WeightTableModel {
+
+	// the learning coefficient is the weight that is added each turn to the
+	// issue weights which changed.
+	private double learnCoef;
+	// value which is added to a value if it is found.
+	private int learnValueAddition;
+	private int amountOfIssues;
+	private int[] issueNumbers;
+	private double[] weights;
+	private int[][] counts;
+	private int[] maximumCounts;
+	// the last two offers, encoded as the index of the value of each issue
+	private int[] oppBid;
+	private int[] prevOppBid;
+	private int[] evaluatedBid;
+	// encodes the offers, and scores the bids for the opponent model strategy
+	private WeightTable weightTable;
+	private boolean weightTableChanged = true;
+	private boolean utilitySpaceChanged = true;
+
+	/**
+	 * Initializes the model such that all issue weights are equal and all the
+	 * values have a count of one.
+	 */
+	@Override
+	public void init(NegotiationSession negotiationSession, Map<String, Double> parameters) {
+		super.init(negotiationSession, parameters);
+		this.negotiationSession = negotiationSession;
+		if (parameters != null && parameters.get("l") != null) {
+			learnCoef = parameters.get("l");
+		} else {
+			learnCoef = 0.2;
+		}
+		learnValueAddition = 1;
+		initializeModel();
+	}
+
+	private void initializeModel() {
+		List<Issue> issues = negotiationSession.getDomain().getIssues();
+		amountOfIssues = issues.size();
+		issueNumbers = new int[amountOfIssues];
+		weights = new double[amountOfIssues];
+		counts = new int[amountOfIssues][];
+		maximumCounts = new int[amountOfIssues];
+		oppBid = new int[amountOfIssues];
+		prevOppBid = new int[amountOfIssues];
+		evaluatedBid = new int[amountOfIssues];
+		weightTable = new WeightTable(negotiationSession.getDomain());
+		opponentUtilitySpace = null;
+
+		for (int i = 0; i < amountOfIssues; i++) {
+			issueNumbers[i] = issues.get(i).getNumber();
+			weights[i] = 1D / (double) amountOfIssues;
+			counts[i] = new int[((IssueDiscrete) issues.get(i)).getNumberOfValues()];
+			Arrays.fill(counts[i], 1);
+			maximumCounts[i] = 1;
+		}
+	}
+
+	/**
+	 * Updates the opponent model given a bid.
+	 */
+	@Override
+	public void updateModel(Bid opponentBid, double time) {
+		if (negotiationSession.getOpponentBidHistory().size() < 2) {
+			return;
+		}
+		List<BidDetails> history = negotiationSession.getOpponentBidHistory().getHistory();
+		if (!weightTable.encode(history.get(history.size() - 1).getBid(), oppBid)
+				|| !weightTable.encode(history.get(history.size() - 2).getBid(), prevOppBid)) {
+			return;
+		}
+
+		// count the number of changes in value
+		int numberOfUnchanged = 0;
+		for (int i = 0; i < amountOfIssues; i++) {
+			if (oppBid[i] == prevOppBid[i])
+				numberOfUnchanged++;
+		}
+
+		// the same golden value, total sum and maximum weight as in the
+		// HardHeaded Frequency Model
+		double goldenValue = learnCoef / (double) amountOfIssues;
+		double totalSum = 1D + goldenValue * (double) numberOfUnchanged;
+		double maximumWeight = 1D - ((double) amountOfIssues) * goldenValue / totalSum;
+		double weightSum = 0;
+
+		for (int i = 0; i < amountOfIssues; i++) {
+			if (oppBid[i] == prevOppBid[i] && weights[i] < maximumWeight)
+				weights[i] = (weights[i] + goldenValue) / totalSum;
+			else
+				weights[i] = weights[i] / totalSum;
+			weightSum += weights[i];
+		}
+
+		// the weights sum to less than one if an unchanged issue is already at
+		// the maximum weight
+		for (int i = 0; i < amountOfIssues; i++)
+			weights[i] /= weightSum;
+
+		// the value offered last time becomes more important
+		for (int i = 0; i < amountOfIssues; i++) {
+			counts[i][oppBid[i]] += learnValueAddition;
+			if (counts[i][oppBid[i]] > maximumCounts[i])
+				maximumCounts[i] = counts[i][oppBid[i]];
+		}
+
+		weightTableChanged = true;
+		utilitySpaceChanged = true;
+	}
+
+	@Override
+	public double getBidEvaluation(Bid bid) {
+		double result = 0;
+		if (!weightTable.encode(bid, evaluatedBid)) {
+			return result;
+		}
+		for (int i = 0; i < amountOfIssues; i++)
+			result += weights[i] * counts[i][evaluatedBid[i]] / maximumCounts[i];
+		return result;
+	}
+
+	@Override
+	public WeightTable getWeightTable() {
+		if (weightTableChanged) {
+			weightTable.update(weights, counts, maximumCounts);
+			weightTableChanged = false;
+		}
+		return weightTable;
+	}
+
+	/**
+	 * Builds the utility space of the opponent from the arrays, if it has
+	 * changed since it was last requested.
+	 */
+	@Override
+	public AbstractUtilitySpace getOpponentUtilitySpace() {
+		if (opponentUtilitySpace == null || utilitySpaceChanged) {
+			if (opponentUtilitySpace == null)
+				opponentUtilitySpace = new AdditiveUtilitySpace(negotiationSession.getDomain());
+			try {
+				for (int i = 0; i < amountOfIssues; i++) {
+					IssueDiscrete issue = (IssueDiscrete) negotiationSession.getDomain().getIssues().get(i);
+					EvaluatorDiscrete evaluator = (EvaluatorDiscrete) opponentUtilitySpace.getEvaluator(issueNumbers[i]);
+					// the weight is set on the evaluator, so the utility space
+					// does not renormalize it
+					evaluator.setWeight(weights[i]);
+					for (int v = 0; v < counts[i].length; v++)
+						evaluator.setEvaluation(issue.getValue(v), counts[i][v]);
+				}
+			} catch (Exception ex) {
+				ex.printStackTrace();
+			}
+			utilitySpaceChanged = false;
+		}
+		return opponentUtilitySpace;
+	}
+
+	@Override
+	public double getWeight(Issue issue) {
+		for (int i = 0; i < amountOfIssues; i++) {
+			if (issueNumbers[i] == issue.getNumber())
+				return weights[i];
+		}
+		return 0;
+	}
+
+	@Override
+	public double[] getIssueWeights() {
+		return weights.clone();
+	}
+
+	@Override
+	public String getName() {
+		return "HardHeaded Frequency Model (arrays) example";
+	}
+
+	@Override
+	public Set<BOAparameter> getParameterSpec() {
+		Set<BOAparameter> set = new HashSet<BOAparameter>();
+		set.add(new BOAparameter("l", 0.2,
+				"The learning coefficient determines how quickly the issue weights are learned"));
+		return set;
+	}
+}
@@ -35,7 +35,7 @@ import negotiator.utility.EvaluatorDiscrete;
  * Strategies
  * 
  */
-public class HardHeadedFrequencyModel extends OpponentModel {
+public class HardHeadedFrequencyModel extends OpponentModel implements WeightTableModel {
 
 	// the learning coefficient is the weight that is added each turn to the
 	// issue weights
@@ -45,6 +45,10 @@ public class HardHeadedFrequencyModel extends OpponentModel {
 	// the value weights converge.
 	private int learnValueAddition;
 	private int amountOfIssues;
+	// flattened form of the opponent utility space, refreshed lazily after
+	// the model is updated.
+	private WeightTable weightTable;
+	private boolean weightTableChanged = true;
 
 	/**
 	 * Initializes the utility space of the opponent such that all value issue
@@ -167,6 +171,18 @@ public class HardHeadedFrequencyModel extends OpponentModel {
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
+		weightTableChanged = true;
+	}
+
+	@Override
+	public WeightTable getWeightTable() {
+		if (weightTable == null) {
+			weightTable = new WeightTable(opponentUtilitySpace);
+		} else if (weightTableChanged) {
+			weightTable.update(opponentUtilitySpace);
+		}
+		weightTableChanged = false;
+		return weightTable;
 	}
 
 	@Override
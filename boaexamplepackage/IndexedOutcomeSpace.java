@@ -0,0 +1,81 @@
+package boaexamplepackage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import misc.Range;
+import negotiator.bidding.BidDetails;
+import negotiator.boaframework.OutcomeSpace;
+import negotiator.utility.AbstractUtilitySpace;
+
+/**
+ * {@link OutcomeSpace} answered by a {@link UtilityIndex}, so an offering
+ * strategy which keeps its outcomes in an index can still register an outcome
+ * space in the negotiation session for the acceptance strategies and opponent
+ * model strategies which read it.
+ *
+ * The outcomes are never enumerated into {@link BidDetails} as a whole:
+ * {@link #generateAllBids(AbstractUtilitySpace)} does nothing, and
+ * {@link #getAllOutcomes()} creates the list the first time it is called. If
+ * the index holds a sample of the outcome space, so does this outcome space.
+ */
+public class IndexedOutcomeSpace extends OutcomeSpace {
+
+	private UtilityIndex utilityIndex;
+	/** all outcomes in descending order of utility, null until requested */
+	private List<BidDetails> allOutcomes;
+
+	/**
+	 * @param utilitySpace
+	 *            utility space the index was created from.
+	 * @param utilityIndex
+	 *            index of the outcomes of the utility space.
+	 */
+	public IndexedOutcomeSpace(AbstractUtilitySpace utilitySpace, UtilityIndex utilityIndex) {
+		super(utilitySpace);
+		this.utilityIndex = utilityIndex;
+	}
+
+	/**
+	 * Does nothing, the outcomes are in the index.
+	 */
+	@Override
+	public void generateAllBids(AbstractUtilitySpace utilSpace) {
+	}
+
+	/**
+	 * @return all outcomes in descending order of utility.
+	 */
+	@Override
+	public List<BidDetails> getAllOutcomes() {
+		if (allOutcomes == null) {
+			allOutcomes = new ArrayList<BidDetails>(utilityIndex.getBidsInRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+		}
+		return allOutcomes;
+	}
+
+	@Override
+	public List<BidDetails> getBidsinRange(Range range) {
+		return new ArrayList<BidDetails>(utilityIndex.getBidsInRange(range.getLowerbound(), range.getUpperbound()));
+	}
+
+	@Override
+	public BidDetails getBidNearUtility(double utility) {
+		return utilityIndex.getBidNearUtility(utility);
+	}
+
+	@Override
+	public int getIndexOfBidNearUtility(double utility) {
+		return utilityIndex.getIndexOfBidNearUtility(utility);
+	}
+
+	@Override
+	public BidDetails getMaxBidPossible() {
+		return utilityIndex.getMaxBidPossible();
+	}
+
+	@Override
+	public BidDetails getMinBidPossible() {
+		return utilityIndex.getMinBidPossible();
+	}
+}
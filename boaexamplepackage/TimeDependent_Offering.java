@@ -24,6 +24,12 @@ import negotiator.boaframework.SortedOutcomeSpace;
  * Note that this agent is not fully equivalent to the theoretical model,
  * loading the domain may take some time, which may lead to the agent skipping
  * the first bid. A better implementation is GeniusTimeDependent_Offering.
+ * 
+ * If all the issues are discrete, the outcomes are kept in a
+ * {@link UtilityIndex} instead of a {@link SortedOutcomeSpace}, which answers
+ * the target utility of every turn by a binary search. The index is then
+ * registered as the outcome space of the session through an
+ * {@link IndexedOutcomeSpace}.
  */
 public class TimeDependent_Offering extends OfferingStrategy {
 
@@ -37,8 +43,10 @@ public class TimeDependent_Offering extends OfferingStrategy {
 	private double Pmin;
 	/** Concession factor */
 	private double e;
-	/** Outcome space */
+	/** Outcome space, only if the domain cannot be indexed */
 	private SortedOutcomeSpace outcomespace;
+	/** Outcomes sorted by utility, if the domain can be indexed */
+	private UtilityIndex utilityIndex;
 
 	/**
 	 * Method which initializes the agent by setting all parameters. The
@@ -51,8 +59,14 @@ public class TimeDependent_Offering extends OfferingStrategy {
 		if (parameters.get("e") != null) {
 			this.negotiationSession = negoSession;
 
-			outcomespace = new SortedOutcomeSpace(negotiationSession.getUtilitySpace());
-			negotiationSession.setOutcomeSpace(outcomespace);
+			if (UtilityIndex.supports(negoSession.getDomain())) {
+				utilityIndex = new UtilityIndex(negotiationSession.getUtilitySpace());
+				negotiationSession.setOutcomeSpace(
+						new IndexedOutcomeSpace(negotiationSession.getUtilitySpace(), utilityIndex));
+			} else {
+				outcomespace = new SortedOutcomeSpace(negotiationSession.getUtilitySpace());
+				negotiationSession.setOutcomeSpace(outcomespace);
+			}
 
 			this.e = parameters.get("e");
 
@@ -63,11 +77,15 @@ public class TimeDependent_Offering extends OfferingStrategy {
 
 			if (parameters.get("min") != null)
 				this.Pmin = parameters.get("min");
+			else if (utilityIndex != null)
+				this.Pmin = utilityIndex.getMinBidPossible().getMyUndiscountedUtil();
 			else
 				this.Pmin = negoSession.getMinBidinDomain().getMyUndiscountedUtil();
 
 			if (parameters.get("max") != null) {
 				Pmax = parameters.get("max");
+			} else if (utilityIndex != null) {
+				Pmax = utilityIndex.getMaxBidPossible().getMyUndiscountedUtil();
 			} else {
 				BidDetails maxBid = negoSession.getMaxBidinDomain();
 				Pmax = maxBid.getMyUndiscountedUtil();
@@ -101,6 +119,17 @@ public class TimeDependent_Offering extends OfferingStrategy {
 		// BilateralAgent.round2(Pmin) + "] t = " + BilateralAgent.round2(time)
 		// + ". Aiming for " + utilityGoal);
 
+		// the index gives the same bids as the outcome space, without scanning
+		// it
+		if (utilityIndex != null) {
+			if (opponentModel instanceof NoModel) {
+				nextBid = utilityIndex.getBidNearUtility(utilityGoal);
+			} else {
+				nextBid = omStrategy.getBid(utilityIndex.getWindow(utilityGoal));
+			}
+			return nextBid;
+		}
+
 		// if there is no opponent model available
 		if (opponentModel instanceof NoModel) {
 			nextBid = negotiationSession.getOutcomeSpace().getBidNearUtility(utilityGoal);
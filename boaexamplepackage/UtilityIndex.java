@@ -0,0 +1,422 @@
+package boaexamplepackage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import negotiator.Bid;
+import negotiator.Domain;
+import negotiator.bidding.BidDetails;
+import negotiator.issue.Issue;
+import negotiator.issue.IssueDiscrete;
+import negotiator.issue.Value;
+import negotiator.utility.AbstractUtilitySpace;
+import negotiator.utility.AdditiveUtilitySpace;
+
+/**
+ * Primitive form of a {@link negotiator.boaframework.SortedOutcomeSpace} over
+ * discrete issues. The utilities of the outcomes are kept in a sorted double[]
+ * (ascending), and each outcome is encoded alongside as the index of its value
+ * in each issue, so an outcome costs a double and an int per issue instead of
+ * a {@link BidDetails}, a {@link Bid} and the map of its values. If the
+ * utility space is additive, the utilities are computed from the encoded
+ * outcomes by a {@link WeightTable}, otherwise each outcome is decoded once
+ * for {@link AbstractUtilitySpace#getUtility(Bid)}. The outcomes are sorted
+ * by a merge sort of their indices, without boxing.
+ *
+ * The nearest-utility and utility-range queries are binary searches. The
+ * {@link BidDetails} of an outcome is created the first time it is returned
+ * and reused afterwards, so the same outcomes in consecutive windows are the
+ * same objects, as the {@link BestBid} cache expects (up to
+ * {@link #MAXIMUM_DETAILS} of them). The last query of each
+ * kind is remembered: a nearest-utility target which falls between the same
+ * two utilities as the last target is answered without a search, and a window
+ * with the same outcomes as the last window is returned as is.
+ *
+ * The index takes at most {@link #HEAP_FRACTION} of the maximum heap. An
+ * outcome space which does not fit is represented by a uniform random sample
+ * of the outcomes that fit (and the best bid, if the utility space is
+ * additive), where the original outcome space could not be created at all.
+ */
+public class UtilityIndex {
+
+	/** fraction of the maximum heap the index may take */
+	private static final double HEAP_FRACTION = 0.25;
+	/**
+	 * bytes per outcome while the index is built: the unsorted and the sorted
+	 * utility, the sorting order and its merge buffer, and the reference to the
+	 * details
+	 */
+	private static final int BYTES_PER_OUTCOME = 2 * 8 + 2 * 4 + 4;
+	/** bytes per outcome and issue: the unsorted and the sorted value index */
+	private static final int BYTES_PER_VALUE = 2 * 4;
+	/**
+	 * the window of OMStrategy#getBid(SortedOutcomeSpace, double), see
+	 * {@link #getWindow(double)}
+	 */
+	private static final double INITIAL_WINDOW_RANGE = 0.01;
+	private static final double RANGE_INCREMENT = 0.01;
+	private static final int EXPECTED_BIDS_IN_WINDOW = 100;
+	private static final double MAXIMUM_WINDOW_UPPERBOUND = 1.01;
+	/** maximum number of details kept, the details are cleared when full */
+	private static final int MAXIMUM_DETAILS = 50000;
+
+	private Domain domain;
+	private IssueDiscrete[] issues;
+	private int numberOfIssues;
+	private int numberOfOutcomes;
+	private boolean complete;
+	/** utility of each outcome, in ascending order */
+	private double[] utilities;
+	/** value indices of the i-th outcome at [i * numberOfIssues, (i + 1) * numberOfIssues) */
+	private int[] values;
+	/** details of each outcome, null until it is returned */
+	private BidDetails[] details;
+	private int numberOfDetails;
+	/** first index with a utility of at least the last nearest-utility target */
+	private int lastNearIndex = -1;
+	private int lastWindowFrom = -1;
+	private int lastWindowTo = -1;
+	private List<BidDetails> lastWindow;
+
+	/**
+	 * @param domain
+	 *            domain of the negotiation.
+	 * @return true if the domain can be indexed, that is, all its issues are
+	 *         discrete.
+	 */
+	public static boolean supports(Domain domain) {
+		for (Issue issue : domain.getIssues()) {
+			if (!(issue instanceof IssueDiscrete)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Indexes all the outcomes of the utility space, or a random sample of
+	 * them if they do not fit into the heap fraction.
+	 *
+	 * @param utilitySpace
+	 *            utility space whose domain is supported, see
+	 *            {@link #supports(Domain)}.
+	 */
+	public UtilityIndex(AbstractUtilitySpace utilitySpace) {
+		domain = utilitySpace.getDomain();
+		numberOfIssues = domain.getIssues().size();
+		issues = new IssueDiscrete[numberOfIssues];
+
+		double numberOfBids = 1;
+		for (int i = 0; i < numberOfIssues; i++) {
+			issues[i] = (IssueDiscrete) domain.getIssues().get(i);
+			numberOfBids *= issues[i].getNumberOfValues();
+		}
+
+		long bytesPerOutcome = BYTES_PER_OUTCOME + (long) BYTES_PER_VALUE * numberOfIssues;
+		long capacity = (long) (Runtime.getRuntime().maxMemory() * HEAP_FRACTION) / bytesPerOutcome;
+		capacity = Math.min(capacity, (Integer.MAX_VALUE - 8) / Math.max(numberOfIssues, 1));
+
+		complete = numberOfBids <= capacity;
+		numberOfOutcomes = (int) (complete ? numberOfBids : capacity);
+
+		WeightTable table = null;
+		if (utilitySpace instanceof AdditiveUtilitySpace) {
+			table = new WeightTable((AdditiveUtilitySpace) utilitySpace);
+		}
+
+		int[] unsortedValues = new int[numberOfOutcomes * numberOfIssues];
+		if (complete) {
+			enumerate(unsortedValues);
+		} else {
+			sample(unsortedValues, table);
+		}
+
+		double[] unsortedUtilities = new double[numberOfOutcomes];
+		int[] encodedBid = new int[numberOfIssues];
+		for (int o = 0; o < numberOfOutcomes; o++) {
+			System.arraycopy(unsortedValues, o * numberOfIssues, encodedBid, 0, numberOfIssues);
+			if (table != null) {
+				unsortedUtilities[o] = table.getEvaluation(encodedBid);
+			} else {
+				unsortedUtilities[o] = utilitySpace.getUtility(decode(encodedBid));
+			}
+		}
+
+		sort(unsortedValues, unsortedUtilities);
+		details = new BidDetails[numberOfOutcomes];
+	}
+
+	/**
+	 * Writes every combination of values, the first issue changing fastest.
+	 */
+	private void enumerate(int[] unsortedValues) {
+		int[] encodedBid = new int[numberOfIssues];
+		for (int o = 0; o < numberOfOutcomes; o++) {
+			System.arraycopy(encodedBid, 0, unsortedValues, o * numberOfIssues, numberOfIssues);
+			for (int i = 0; i < numberOfIssues; i++) {
+				if (++encodedBid[i] < issues[i].getNumberOfValues()) {
+					break;
+				}
+				encodedBid[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Writes random combinations of values. If the utility space is additive,
+	 * that is, if there is a table, the first one is the best bid, which takes
+	 * the best value of each issue (AbstractUtilitySpace#getMaxUtilityBid would
+	 * iterate every outcome).
+	 */
+	private void sample(int[] unsortedValues, WeightTable table) {
+		Random random = new Random(numberOfOutcomes);
+		int from = 0;
+		if (table != null) {
+			int[] maxBid = new int[numberOfIssues];
+			for (int i = 0; i < numberOfIssues; i++) {
+				int bestValue = 0;
+				double bestEvaluation = -1;
+				for (int v = 0; v < issues[i].getNumberOfValues(); v++) {
+					maxBid[i] = v;
+					if (table.getEvaluation(maxBid) > bestEvaluation) {
+						bestValue = v;
+						bestEvaluation = table.getEvaluation(maxBid);
+					}
+				}
+				maxBid[i] = bestValue;
+			}
+			System.arraycopy(maxBid, 0, unsortedValues, 0, numberOfIssues);
+			from = 1;
+		}
+		for (int o = from; o < numberOfOutcomes; o++) {
+			for (int i = 0; i < numberOfIssues; i++) {
+				unsortedValues[o * numberOfIssues + i] = random.nextInt(issues[i].getNumberOfValues());
+			}
+		}
+	}
+
+	/**
+	 * Sorts the outcomes by ascending utility. Outcomes with the same utility
+	 * keep their order, as with Arrays#sort of boxed indices.
+	 */
+	private void sort(int[] unsortedValues, double[] unsortedUtilities) {
+		int[] order = new int[numberOfOutcomes];
+		for (int o = 0; o < numberOfOutcomes; o++) {
+			order[o] = o;
+		}
+		sort(order, new int[numberOfOutcomes], unsortedUtilities, 0, numberOfOutcomes);
+
+		utilities = new double[numberOfOutcomes];
+		values = new int[numberOfOutcomes * numberOfIssues];
+		for (int o = 0; o < numberOfOutcomes; o++) {
+			utilities[o] = unsortedUtilities[order[o]];
+			System.arraycopy(unsortedValues, order[o] * numberOfIssues, values, o * numberOfIssues, numberOfIssues);
+		}
+	}
+
+	/**
+	 * Stable merge sort of order[from, to) by the utilities of the outcomes,
+	 * using the same range of the buffer.
+	 */
+	private static void sort(int[] order, int[] buffer, double[] unsortedUtilities, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sort(order, buffer, unsortedUtilities, from, middle);
+		sort(order, buffer, unsortedUtilities, middle, to);
+		if (Double.compare(unsortedUtilities[order[middle - 1]], unsortedUtilities[order[middle]]) <= 0) {
+			return;
+		}
+		System.arraycopy(order, from, buffer, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int o = from; o < to; o++) {
+			if (right == to || (left < middle
+					&& Double.compare(unsortedUtilities[buffer[left]], unsortedUtilities[buffer[right]]) <= 0)) {
+				order[o] = buffer[left++];
+			} else {
+				order[o] = buffer[right++];
+			}
+		}
+	}
+
+	private Bid decode(int[] encodedBid) {
+		HashMap<Integer, Value> bidValues = new HashMap<Integer, Value>();
+		for (int i = 0; i < numberOfIssues; i++) {
+			bidValues.put(issues[i].getNumber(), issues[i].getValue(encodedBid[i]));
+		}
+		return new Bid(domain, bidValues);
+	}
+
+	private BidDetails getDetails(int index) {
+		if (details[index] == null) {
+			if (numberOfDetails >= MAXIMUM_DETAILS) {
+				Arrays.fill(details, null);
+				numberOfDetails = 0;
+			}
+			numberOfDetails++;
+			int[] encodedBid = Arrays.copyOfRange(values, index * numberOfIssues, (index + 1) * numberOfIssues);
+			details[index] = new BidDetails(decode(encodedBid), utilities[index]);
+		}
+		return details[index];
+	}
+
+	/**
+	 * @return index of the first outcome with a utility of at least the given
+	 *         utility, or the number of outcomes if there is none.
+	 */
+	private int searchIndexWith(double utility) {
+		int low = 0;
+		int high = numberOfOutcomes;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (utilities[middle] < utility) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return index of the first outcome with a utility greater than the given
+	 *         utility, or the number of outcomes if there is none.
+	 */
+	private int searchIndexAbove(double utility) {
+		int low = 0;
+		int high = numberOfOutcomes;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (utilities[middle] <= utility) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param utility
+	 *            target utility.
+	 * @return an outcome whose utility is the nearest to the target, the
+	 *         higher one on ties.
+	 */
+	public BidDetails getBidNearUtility(double utility) {
+		return getDetails(searchIndexNear(utility));
+	}
+
+	/**
+	 * @param utility
+	 *            target utility.
+	 * @return position of the outcome of {@link #getBidNearUtility(double)} in
+	 *         the outcomes in descending order of utility, as in
+	 *         OutcomeSpace#getIndexOfBidNearUtility(double).
+	 */
+	public int getIndexOfBidNearUtility(double utility) {
+		return numberOfOutcomes - 1 - searchIndexNear(utility);
+	}
+
+	private int searchIndexNear(double utility) {
+		// the target is between the same two utilities as the last one
+		int index = lastNearIndex;
+		if (index < 0 || (index < numberOfOutcomes && utility > utilities[index])
+				|| (index > 0 && utility <= utilities[index - 1])) {
+			index = searchIndexWith(utility);
+			lastNearIndex = index;
+		}
+		if (index == numberOfOutcomes
+				|| (index > 0 && utility - utilities[index - 1] < utilities[index] - utility)) {
+			index--;
+		}
+		return index;
+	}
+
+	/**
+	 * @return the outcomes with a utility in [lowerbound, upperbound], in
+	 *         descending order of utility. The list must not be modified.
+	 */
+	public List<BidDetails> getBidsInRange(double lowerbound, double upperbound) {
+		return getWindow(searchIndexWith(lowerbound), searchIndexAbove(upperbound));
+	}
+
+	/**
+	 * The window of OMStrategy#getBid(SortedOutcomeSpace, double): the
+	 * outcomes in [target, target + 0.01], whose upperbound is increased by
+	 * 0.01 while the window has less than 100 outcomes and the upperbound is
+	 * below 1.01. If the window is still empty, it holds the outcome nearest to
+	 * the target. Only the bounds are searched while the window is widened.
+	 *
+	 * The javadoc of Genius names these constants (INITIAL_WINDOW_RANGE,
+	 * RANGE_INCREMENT and EXPECTED_BIDS_IN_WINDOW) without their values.
+	 * UtilityIndexCheck in bench/ compares the windows, the ranges and the
+	 * nearest outcomes with those of the Genius on the classpath, and must pass
+	 * before the index replaces a SortedOutcomeSpace with another version of
+	 * negosimulator.jar.
+	 *
+	 * @param targetUtility
+	 *            minimum utility of the window.
+	 * @return the outcomes of the window, in descending order of utility. The
+	 *         list must not be modified.
+	 */
+	public List<BidDetails> getWindow(double targetUtility) {
+		int from = searchIndexWith(targetUtility);
+		double upperbound = targetUtility + INITIAL_WINDOW_RANGE;
+		int to = searchIndexAbove(upperbound);
+		while (to - from < EXPECTED_BIDS_IN_WINDOW && upperbound < MAXIMUM_WINDOW_UPPERBOUND) {
+			upperbound += RANGE_INCREMENT;
+			to = searchIndexAbove(upperbound);
+		}
+		if (to == from) {
+			return Collections.singletonList(getBidNearUtility(targetUtility));
+		}
+		return getWindow(from, to);
+	}
+
+	private List<BidDetails> getWindow(int from, int to) {
+		if (from != lastWindowFrom || to != lastWindowTo) {
+			List<BidDetails> window = new ArrayList<BidDetails>(Math.max(to - from, 0));
+			for (int index = to - 1; index >= from; index--) {
+				window.add(getDetails(index));
+			}
+			lastWindow = Collections.unmodifiableList(window);
+			lastWindowFrom = from;
+			lastWindowTo = to;
+		}
+		return lastWindow;
+	}
+
+	/**
+	 * @return the outcome with the highest utility.
+	 */
+	public BidDetails getMaxBidPossible() {
+		return getDetails(numberOfOutcomes - 1);
+	}
+
+	/**
+	 * @return the outcome with the lowest utility.
+	 */
+	public BidDetails getMinBidPossible() {
+		return getDetails(0);
+	}
+
+	/**
+	 * @return the number of outcomes in the index.
+	 */
+	public int size() {
+		return numberOfOutcomes;
+	}
+
+	/**
+	 * @return false if the index holds a sample of the outcome space.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+}
@@ -0,0 +1,182 @@
+package boaexamplepackage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import negotiator.Bid;
+import negotiator.Domain;
+import negotiator.issue.Issue;
+import negotiator.issue.IssueDiscrete;
+import negotiator.issue.Value;
+import negotiator.utility.AdditiveUtilitySpace;
+import negotiator.utility.EvaluatorDiscrete;
+
+/**
+ * Flattened form of an additive opponent utility space over discrete issues.
+ * The weighted and normalized evaluation of every value is stored in a single
+ * array, so a bid that is encoded once (as the index of its value in each
+ * issue) is evaluated by a few array reads, instead of the evaluator lookups
+ * and the normalization of {@link AdditiveUtilitySpace#getUtility(Bid)}.
+ *
+ * The table is refreshed by the opponent model whenever its weights change,
+ * either from a utility space or directly from the arrays of a frequency
+ * model, and every refresh increments its version.
+ */
+public class WeightTable {
+
+	/** number of each issue, in the order of the domain */
+	private int[] issueNumbers;
+	/** position of the first value of each issue in the evaluations */
+	private int[] offsets;
+	/** weight of the issue times the normalized evaluation of the value */
+	private double[] evaluations;
+	/** index of each value in its issue */
+	private List<Map<Value, Integer>> valueIndices;
+	private long version = 0;
+
+	/**
+	 * Creates the table of the given utility space, whose issues must all be
+	 * discrete.
+	 *
+	 * @param utilitySpace
+	 *            additive utility space of the opponent.
+	 */
+	public WeightTable(AdditiveUtilitySpace utilitySpace) {
+		this(utilitySpace.getDomain());
+		update(utilitySpace);
+	}
+
+	/**
+	 * Creates an empty table of the given domain, whose issues must all be
+	 * discrete.
+	 *
+	 * @param domain
+	 *            domain of the negotiation.
+	 */
+	public WeightTable(Domain domain) {
+		List<Issue> issues = domain.getIssues();
+		int numberOfValues = 0;
+
+		issueNumbers = new int[issues.size()];
+		offsets = new int[issues.size()];
+		valueIndices = new ArrayList<Map<Value, Integer>>(issues.size());
+
+		for (int i = 0; i < issues.size(); i++) {
+			IssueDiscrete issue = (IssueDiscrete) issues.get(i);
+			Map<Value, Integer> indices = new HashMap<Value, Integer>();
+
+			for (int v = 0; v < issue.getNumberOfValues(); v++)
+				indices.put(issue.getValue(v), v);
+
+			issueNumbers[i] = issue.getNumber();
+			offsets[i] = numberOfValues;
+			valueIndices.add(indices);
+			numberOfValues += issue.getNumberOfValues();
+		}
+
+		evaluations = new double[numberOfValues];
+	}
+
+	/**
+	 * Copies the current weights and evaluations of the utility space into the
+	 * table.
+	 *
+	 * @param utilitySpace
+	 *            the utility space the table was created from.
+	 */
+	public void update(AdditiveUtilitySpace utilitySpace) {
+		List<Issue> issues = utilitySpace.getDomain().getIssues();
+
+		for (int i = 0; i < issueNumbers.length; i++) {
+			IssueDiscrete issue = (IssueDiscrete) issues.get(i);
+			EvaluatorDiscrete evaluator = (EvaluatorDiscrete) utilitySpace.getEvaluator(issueNumbers[i]);
+			double weight = utilitySpace.getWeight(issueNumbers[i]);
+
+			for (int v = 0; v < issue.getNumberOfValues(); v++) {
+				try {
+					evaluations[offsets[i] + v] = weight * evaluator.getEvaluation(issue.getValue(v));
+				} catch (Exception e) {
+					evaluations[offsets[i] + v] = 0;
+				}
+			}
+		}
+
+		version++;
+	}
+
+	/**
+	 * Copies the weights of a frequency model into the table. The evaluation
+	 * of a value is its count divided by the highest count of its issue, as
+	 * in a normalized {@link EvaluatorDiscrete}.
+	 *
+	 * @param issueWeights
+	 *            weight of each issue, in the order of the domain.
+	 * @param valueCounts
+	 *            count of each value of each issue, in the order of the domain.
+	 * @param maximumCounts
+	 *            highest count of each issue.
+	 */
+	public void update(double[] issueWeights, int[][] valueCounts, int[] maximumCounts) {
+		for (int i = 0; i < issueNumbers.length; i++)
+			for (int v = 0; v < valueCounts[i].length; v++)
+				evaluations[offsets[i] + v] = issueWeights[i] * valueCounts[i][v] / maximumCounts[i];
+
+		version++;
+	}
+
+	/**
+	 * @param bid
+	 *            bid of the domain of the table.
+	 * @return index of the value of the bid in each issue, or null if the bid
+	 *         has a value that is not in the domain.
+	 */
+	public int[] encode(Bid bid) {
+		int[] encodedBid = new int[issueNumbers.length];
+		return encode(bid, encodedBid) ? encodedBid : null;
+	}
+
+	/**
+	 * Encodes the bid into the given array, without allocating.
+	 *
+	 * @param bid
+	 *            bid of the domain of the table.
+	 * @param encodedBid
+	 *            array with an element per issue.
+	 * @return false if the bid has a value that is not in the domain.
+	 */
+	public boolean encode(Bid bid, int[] encodedBid) {
+		for (int i = 0; i < issueNumbers.length; i++) {
+			Integer index = valueIndices.get(i).get(bid.getValue(issueNumbers[i]));
+
+			if (index == null)
+				return false;
+
+			encodedBid[i] = index;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param encodedBid
+	 *            bid encoded by {@link #encode(Bid)}.
+	 * @return the utility of the bid for the opponent.
+	 */
+	public double getEvaluation(int[] encodedBid) {
+		double evaluation = 0;
+
+		for (int i = 0; i < encodedBid.length; i++)
+			evaluation += evaluations[offsets[i] + encodedBid[i]];
+
+		return evaluation;
+	}
+
+	/**
+	 * @return number which changes whenever the evaluations change.
+	 */
+	public long getVersion() {
+		return version;
+	}
+}
@@ -0,0 +1,17 @@
+package boaexamplepackage;
+
+/**
+ * An opponent model whose estimate of the opponent's preferences is additive
+ * and can be given as a {@link WeightTable}. Opponent model strategies use the
+ * table to score many bids at once, instead of calling
+ * {@link negotiator.boaframework.OpponentModel#getBidEvaluation(negotiator.Bid)}
+ * for every bid.
+ */
+public interface WeightTableModel {
+
+	/**
+	 * @return the table of the current estimate, or null if the estimate cannot
+	 *         be flattened.
+	 */
+	WeightTable getWeightTable();
+}
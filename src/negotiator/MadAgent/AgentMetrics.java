@@ -0,0 +1,320 @@
+package negotiator.MadAgent;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.ObjectName;
+
+/* -------------------------------- AGENT METRICS --------------------------------
+ * Latency histograms of the decision paths of getBestBidPossible and counters of the strategy, shared by all
+ * the agents in the JVM. They are published as the MBean negotiator.MadAgent:type=AgentMetrics and written to
+ * log/madagent-metrics.txt every few seconds.
+ * 	- Enabled with -Dmadagent.metrics=true, the snapshot interval is set with -Dmadagent.metrics.interval (seconds).
+ * 	- ENABLED is a constant, so when it is false the JIT removes the instrumentation and nothing is measured.
+ * 	- A latency falls into the bucket of its highest bit, so recording is a few atomic increments and
+ * 	  a percentile is reported as the upper bound of its bucket (within a factor of 2).
+ * */
+public class AgentMetrics implements AgentMetricsMBean {
+
+	public static final boolean ENABLED = Boolean.getBoolean("madagent.metrics");
+
+	public static final int SECOND_BEST_BID = 0;
+	public static final int FAKE_BID = 1;
+	public static final int NICE_BID = 2;
+	public static final int BEST_RECEIVED_BID = 3;
+
+	private static final String[] DECISION_PATHS = { "secondBestBid", "fakeBid", "niceBid", "bestReceivedBid" };
+	private static final int NUMBER_OF_BUCKETS = 64;
+	private static final String SNAPSHOT_FILE = "log/madagent-metrics.txt";
+	private static final AgentMetrics INSTANCE = new AgentMetrics();
+
+	private AtomicLongArray[] histograms = null; // histograms[path][b] -> Number of latencies in [2^b, 2^(b+1)) nanoseconds
+	private AtomicLongArray latencySums = null;
+	private LongAdder acceptCount = new LongAdder();
+	private LongAdder offerCount = new LongAdder();
+	private LongAdder maxUtilityBidFallbacks = new LongAdder();
+	private LongAdder utilityEvaluations = new LongAdder(); // Of non-additive spaces, which go through the cache of the evaluator
+	private LongAdder utilityCacheHits = new LongAdder();
+	private LongAdder preferredBidsCacheHits = new LongAdder(); // Selector reused, since the model has not changed or the budget is spent
+	private LongAdder preferredBidsCacheMisses = new LongAdder(); // Selector rebuilt in the turn
+	private LongAdder preferredBidsPipelineHits = new LongAdder(); // Selector prepared in the background (see CandidatePipeline)
+	private LongAdder distinctOffers = new LongAdder();
+	private LongAdder skippedRepeats = new LongAdder(); // Candidates skipped since they were offered before
+	private LongAdder bidPoolHits = new LongAdder();
+	private LongAdder bidPoolMisses = new LongAdder();
+	private LongAdder exhaustedTurns = new LongAdder(); // Turns that spent their compute budget (see ComputeBudget)
+
+	static {
+		if (ENABLED)
+			INSTANCE.publish();
+	}
+
+	private AgentMetrics() {
+		histograms = new AtomicLongArray[DECISION_PATHS.length];
+		latencySums = new AtomicLongArray(DECISION_PATHS.length);
+
+		for (int path = 0; path < DECISION_PATHS.length; path++)
+			histograms[path] = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	}
+
+	private void publish() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("negotiator.MadAgent:type=AgentMetrics"));
+		} catch (Exception e) {
+			System.err.println("An exception thrown while registering the metrics MBean..");
+		}
+
+		long interval = Long.getLong("madagent.metrics.interval", 10);
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "MadAgent metrics");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				writeSnapshot();
+			}
+		}, interval, interval, TimeUnit.SECONDS);
+	}
+
+	private void writeSnapshot() {
+		try {
+			Path snapshotFile = Paths.get(SNAPSHOT_FILE);
+			Path temporaryFile = Paths.get(SNAPSHOT_FILE + ".tmp");
+
+			Files.createDirectories(snapshotFile.getParent());
+			Files.write(temporaryFile, getSnapshot().getBytes(StandardCharsets.UTF_8));
+			Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+		} catch (Exception e) {
+			System.err.println("An exception thrown while writing the metrics to " + new File(SNAPSHOT_FILE) + "..");
+		}
+	}
+
+	/* The callers check ENABLED before measuring, so these are never called when the metrics are disabled */
+	public static void recordLatency(int decisionPath, long startTime) {
+		long latency = Math.max(1, System.nanoTime() - startTime);
+
+		INSTANCE.histograms[decisionPath].incrementAndGet(64 - Long.numberOfLeadingZeros(latency) - 1);
+		INSTANCE.latencySums.addAndGet(decisionPath, latency);
+	}
+
+	public static void countAccept() {
+		INSTANCE.acceptCount.increment();
+	}
+
+	public static void countOffer() {
+		INSTANCE.offerCount.increment();
+	}
+
+	public static void countMaxUtilityBidFallback() {
+		INSTANCE.maxUtilityBidFallbacks.increment();
+	}
+
+	public static void countUtilityEvaluation() {
+		INSTANCE.utilityEvaluations.increment();
+	}
+
+	public static void countUtilityCacheHit() {
+		INSTANCE.utilityCacheHits.increment();
+	}
+
+	public static void countPreferredBidsCacheHit() {
+		INSTANCE.preferredBidsCacheHits.increment();
+	}
+
+	public static void countPreferredBidsCacheMiss() {
+		INSTANCE.preferredBidsCacheMisses.increment();
+	}
+
+	public static void countPreferredBidsPipelineHit() {
+		INSTANCE.preferredBidsPipelineHits.increment();
+	}
+
+	public static void countDistinctOffer() {
+		INSTANCE.distinctOffers.increment();
+	}
+
+	public static void countSkippedRepeat() {
+		INSTANCE.skippedRepeats.increment();
+	}
+
+	public static void countBidPoolHit() {
+		INSTANCE.bidPoolHits.increment();
+	}
+
+	public static void countBidPoolMiss() {
+		INSTANCE.bidPoolMisses.increment();
+	}
+
+	public static void countExhaustedTurn() {
+		INSTANCE.exhaustedTurns.increment();
+	}
+
+	@Override
+	public long getAcceptCount() {
+		return acceptCount.sum();
+	}
+
+	@Override
+	public long getOfferCount() {
+		return offerCount.sum();
+	}
+
+	@Override
+	public long getMaxUtilityBidFallbacks() {
+		return maxUtilityBidFallbacks.sum();
+	}
+
+	@Override
+	public long getUtilityEvaluations() {
+		return utilityEvaluations.sum();
+	}
+
+	@Override
+	public long getUtilityCacheHits() {
+		return utilityCacheHits.sum();
+	}
+
+	@Override
+	public long getPreferredBidsCacheHits() {
+		return preferredBidsCacheHits.sum();
+	}
+
+	@Override
+	public long getPreferredBidsCacheMisses() {
+		return preferredBidsCacheMisses.sum();
+	}
+
+	@Override
+	public long getPreferredBidsPipelineHits() {
+		return preferredBidsPipelineHits.sum();
+	}
+
+	@Override
+	public long getDistinctOffers() {
+		return distinctOffers.sum();
+	}
+
+	@Override
+	public long getSkippedRepeats() {
+		return skippedRepeats.sum();
+	}
+
+	@Override
+	public long getBidPoolHits() {
+		return bidPoolHits.sum();
+	}
+
+	@Override
+	public long getBidPoolMisses() {
+		return bidPoolMisses.sum();
+	}
+
+	@Override
+	public long getExhaustedTurns() {
+		return exhaustedTurns.sum();
+	}
+
+	@Override
+	public String[] getDecisionPaths() {
+		return DECISION_PATHS.clone();
+	}
+
+	private int getPathIndex(String decisionPath) {
+		int path = Arrays.asList(DECISION_PATHS).indexOf(decisionPath);
+
+		if (path < 0)
+			throw new IllegalArgumentException("Unknown decision path " + decisionPath);
+
+		return path;
+	}
+
+	@Override
+	public long getLatencyCount(String decisionPath) {
+		AtomicLongArray histogram = histograms[getPathIndex(decisionPath)];
+		long count = 0;
+
+		for (int b = 0; b < NUMBER_OF_BUCKETS; b++)
+			count += histogram.get(b);
+
+		return count;
+	}
+
+	@Override
+	public double getMeanLatency(String decisionPath) {
+		long count = getLatencyCount(decisionPath);
+		return (count > 0) ? latencySums.get(getPathIndex(decisionPath)) / 1000.0 / count : 0;
+	}
+
+	@Override
+	public double getLatencyPercentile(String decisionPath, double percentile) {
+		AtomicLongArray histogram = histograms[getPathIndex(decisionPath)];
+		long count = getLatencyCount(decisionPath);
+		long seen = 0;
+
+		for (int b = 0; b < NUMBER_OF_BUCKETS; b++) {
+			seen += histogram.get(b);
+
+			if (count > 0 && seen >= Math.ceil(count * percentile / 100))
+				return Math.pow(2, b + 1) / 1000.0;
+		}
+
+		return 0;
+	}
+
+	@Override
+	public String getSnapshot() {
+		StringBuilder snapshot = new StringBuilder();
+
+		snapshot.append("time: ").append(new Date()).append('\n');
+		snapshot.append("accepts: ").append(getAcceptCount()).append('\n');
+		snapshot.append("offers: ").append(getOfferCount()).append('\n');
+		snapshot.append("max utility bid fallbacks: ").append(getMaxUtilityBidFallbacks()).append('\n');
+		snapshot.append("utility evaluations: ").append(getUtilityEvaluations()).append(", cache hits: ").append(getUtilityCacheHits()).append('\n');
+		snapshot.append("preferred bids: ").append(getPreferredBidsCacheHits()).append(" cache hits, ").append(getPreferredBidsCacheMisses())
+				.append(" misses, ").append(getPreferredBidsPipelineHits()).append(" prepared in the background\n");
+		snapshot.append("distinct offers: ").append(getDistinctOffers()).append(", skipped repeats: ").append(getSkippedRepeats()).append('\n');
+		snapshot.append("bid pool: ").append(getBidPoolHits()).append(" hits, ").append(getBidPoolMisses()).append(" misses\n");
+		snapshot.append("exhausted turns: ").append(getExhaustedTurns()).append('\n');
+
+		for (String decisionPath : DECISION_PATHS)
+			snapshot.append(String.format(Locale.US, "%s: count=%d mean=%.1fus p50<=%.1fus p99<=%.1fus max<=%.1fus%n", decisionPath,
+					getLatencyCount(decisionPath), getMeanLatency(decisionPath), getLatencyPercentile(decisionPath, 50),
+					getLatencyPercentile(decisionPath, 99), getLatencyPercentile(decisionPath, 100)));
+
+		return snapshot.toString();
+	}
+
+	@Override
+	public void reset() {
+		for (int path = 0; path < DECISION_PATHS.length; path++) {
+			for (int b = 0; b < NUMBER_OF_BUCKETS; b++)
+				histograms[path].set(b, 0);
+
+			latencySums.set(path, 0);
+		}
+
+		acceptCount.reset();
+		offerCount.reset();
+		maxUtilityBidFallbacks.reset();
+		utilityEvaluations.reset();
+		utilityCacheHits.reset();
+		preferredBidsCacheHits.reset();
+		preferredBidsCacheMisses.reset();
+		preferredBidsPipelineHits.reset();
+		distinctOffers.reset();
+		skippedRepeats.reset();
+		bidPoolHits.reset();
+		bidPoolMisses.reset();
+		exhaustedTurns.reset();
+	}
+}
@@ -0,0 +1,43 @@
+package negotiator.MadAgent;
+
+/* Management interface of AgentMetrics, latencies are in microseconds */
+public interface AgentMetricsMBean {
+
+	long getAcceptCount();
+
+	long getOfferCount();
+
+	long getMaxUtilityBidFallbacks();
+
+	long getUtilityEvaluations();
+
+	long getUtilityCacheHits();
+
+	long getPreferredBidsCacheHits();
+
+	long getPreferredBidsCacheMisses();
+
+	long getPreferredBidsPipelineHits();
+
+	long getDistinctOffers();
+
+	long getSkippedRepeats();
+
+	long getBidPoolHits();
+
+	long getBidPoolMisses();
+
+	long getExhaustedTurns();
+
+	String[] getDecisionPaths();
+
+	long getLatencyCount(String decisionPath);
+
+	double getMeanLatency(String decisionPath);
+
+	double getLatencyPercentile(String decisionPath, double percentile);
+
+	String getSnapshot();
+
+	void reset();
+}
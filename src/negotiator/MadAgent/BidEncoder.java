@@ -0,0 +1,233 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+import negotiator.*;
+import negotiator.issue.*;
+
+/* -------------------------------- BID ENCODING --------------------------------
+ * A bid is represented as an int[] where the i-th element is the index of the value chosen for the i-th issue.
+ * 	- Discrete issues use the index of the value in the issue.
+ * 	- Integer issues use the offset of the value from the lower bound.
+ * 	- Real issues use the index of the nearest discretization step, so the encoding of a real value is lossy
+ * 	  (see isExact) and the utility of a received bid is computed from the Bid itself.
+ * A value that is not in its issue (an unknown discrete value or an integer out of bounds) cannot be encoded,
+ * encode throws an IllegalArgumentException for it instead of returning an index out of the range of the issue.
+ * If the product of the number of values of all issues fits into a long, the indices are packed into
+ * a mixed-radix long key: key = i1 + r1 * (i2 + r2 * (i3 + ...)).
+ * Bid objects are only created when they are needed by the protocol (Offer/Accept).
+ * */
+public class BidEncoder {
+
+	private static final int MINIMUM_NUMBER_OF_REAL_STEPS = 2;
+
+	private Domain domain = null;
+	private Issue[] issues = null;
+	private int[] issueNumbers = null;
+	private int[] numberOfValues = null; // Radix of each issue
+	private long[] multipliers = null; // Place value of each issue in the packed key
+	private boolean packable = true;
+	private Value[][] values = null; // Value objects of discrete issues, indexed by value index
+	private List<Map<Value, Integer>> valueIndices = null; // Reverse lookup for discrete issues
+	private double[] lowerBounds = null;
+	private double[] stepSizes = null;
+	private boolean exact = true; // False if a real issue is discretized
+
+	public BidEncoder(Domain domain) {
+		this.domain = domain;
+
+		List<Issue> domainIssues = domain.getIssues();
+		int n = domainIssues.size();
+
+		issues = new Issue[n];
+		issueNumbers = new int[n];
+		numberOfValues = new int[n];
+		multipliers = new long[n];
+		values = new Value[n][];
+		valueIndices = new ArrayList<Map<Value, Integer>>();
+		lowerBounds = new double[n];
+		stepSizes = new double[n];
+
+		long multiplier = 1;
+
+		for (int i = 0; i < n; i++) {
+			Issue issue = domainIssues.get(i);
+
+			issues[i] = issue;
+			issueNumbers[i] = issue.getNumber();
+			valueIndices.add(null);
+
+			switch (issue.getType()) {
+			case DISCRETE:
+				IssueDiscrete issueDiscrete = (IssueDiscrete) issue;
+				Map<Value, Integer> indices = new HashMap<Value, Integer>();
+
+				numberOfValues[i] = issueDiscrete.getNumberOfValues();
+				values[i] = new Value[numberOfValues[i]];
+
+				for (int j = 0; j < numberOfValues[i]; j++) {
+					values[i][j] = issueDiscrete.getValue(j);
+					indices.put(values[i][j], j);
+				}
+
+				valueIndices.set(i, indices);
+				break;
+			case INTEGER:
+				IssueInteger issueInteger = (IssueInteger) issue;
+
+				numberOfValues[i] = issueInteger.getUpperBound() - issueInteger.getLowerBound() + 1;
+				lowerBounds[i] = issueInteger.getLowerBound();
+				stepSizes[i] = 1;
+				break;
+			case REAL:
+				IssueReal issueReal = (IssueReal) issue;
+
+				numberOfValues[i] = Math.max(issueReal.getNumberOfDiscretizationSteps(), MINIMUM_NUMBER_OF_REAL_STEPS);
+				lowerBounds[i] = issueReal.getLowerBound();
+				stepSizes[i] = (issueReal.getUpperBound() - issueReal.getLowerBound()) / (numberOfValues[i] - 1);
+				exact = false;
+				break;
+			default:
+				throw new IllegalArgumentException("Issue type " + issue.getType() + " is not supported");
+			}
+
+			multipliers[i] = multiplier;
+
+			/* The key does not fit into a long if the next place value overflows */
+			if (packable && multiplier > Long.MAX_VALUE / numberOfValues[i])
+				packable = false;
+			else
+				multiplier *= numberOfValues[i];
+		}
+	}
+
+	public int[] encode(Bid bid) {
+		int[] encoded = new int[issues.length];
+
+		for (int i = 0; i < issues.length; i++)
+			encoded[i] = getValueIndex(i, bid.getValue(issueNumbers[i]));
+
+		return encoded;
+	}
+
+	public Bid decode(int[] encoded) {
+		HashMap<Integer, Value> bidValues = new HashMap<Integer, Value>();
+
+		for (int i = 0; i < issues.length; i++)
+			bidValues.put(issueNumbers[i], getValue(i, encoded[i]));
+
+		return new Bid(domain, bidValues);
+	}
+
+	public int getValueIndex(int issueIndex, Value value) {
+		switch (issues[issueIndex].getType()) {
+		case DISCRETE:
+			Integer index = valueIndices.get(issueIndex).get(value);
+
+			if (index == null)
+				throw new IllegalArgumentException("Value " + value + " is not a value of issue " + issues[issueIndex].getName());
+
+			return index;
+		case INTEGER:
+			int offset = ((ValueInteger) value).getValue() - (int) lowerBounds[issueIndex];
+
+			if (offset < 0 || offset >= numberOfValues[issueIndex])
+				throw new IllegalArgumentException("Value " + value + " is out of the bounds of issue " + issues[issueIndex].getName());
+
+			return offset;
+		default:
+			int step = (int) Math.round((((ValueReal) value).getValue() - lowerBounds[issueIndex]) / stepSizes[issueIndex]);
+			return Math.min(Math.max(step, 0), numberOfValues[issueIndex] - 1);
+		}
+	}
+
+	public Value getValue(int issueIndex, int valueIndex) {
+		switch (issues[issueIndex].getType()) {
+		case DISCRETE:
+			return values[issueIndex][valueIndex];
+		case INTEGER:
+			return new ValueInteger((int) lowerBounds[issueIndex] + valueIndex);
+		default:
+			return new ValueReal(lowerBounds[issueIndex] + valueIndex * stepSizes[issueIndex]);
+		}
+	}
+
+	/* Packs the encoded bid into a mixed-radix key, only valid if the domain is packable */
+	public long pack(int[] encoded) {
+		long key = 0;
+
+		for (int i = 0; i < encoded.length; i++)
+			key += encoded[i] * multipliers[i];
+
+		return key;
+	}
+
+	public int[] unpack(long key) {
+		int[] encoded = new int[issues.length];
+
+		for (int i = 0; i < issues.length; i++) {
+			encoded[i] = (int) (key % numberOfValues[i]);
+			key /= numberOfValues[i];
+		}
+
+		return encoded;
+	}
+
+	/* Reduces the encoded bid to a non-negative long: its packed key if the domain is packable (exact), otherwise
+	   a 63-bit hash of its value indices, whose collisions are negligible for the number of bids a session sees */
+	public long getKey(int[] encoded) {
+		if (packable)
+			return pack(encoded);
+
+		long hash = 0xCBF29CE484222325L;
+
+		for (int value : encoded)
+			hash = (hash ^ value) * 0x100000001B3L;
+
+		return mix(hash) & Long.MAX_VALUE;
+	}
+
+	static long mix(long hash) {
+		hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+		hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	public boolean isPackable() {
+		return packable;
+	}
+
+	/* True if decoding an encoded bid gives back the same values, i.e. there is no real issue */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/* Size of the outcome space, as a double since it does not fit into a long for large domains */
+	public double getNumberOfBids() {
+		double numberOfBids = 1;
+
+		for (int i = 0; i < numberOfValues.length; i++)
+			numberOfBids *= numberOfValues[i];
+
+		return numberOfBids;
+	}
+
+	public Domain getDomain() {
+		return domain;
+	}
+
+	public int getNumberOfIssues() {
+		return issues.length;
+	}
+
+	public Issue getIssue(int issueIndex) {
+		return issues[issueIndex];
+	}
+
+	public int getIssueNumber(int issueIndex) {
+		return issueNumbers[issueIndex];
+	}
+
+	public int getNumberOfValues(int issueIndex) {
+		return numberOfValues[issueIndex];
+	}
+}
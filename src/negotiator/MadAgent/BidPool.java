@@ -0,0 +1,89 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+import negotiator.*;
+
+/* -------------------------------- BID POOL --------------------------------
+ * Interns the bids that are received and offered, so a bid that is repeated shares one encoding and one Bid object.
+ * 	- The opponents repeat the same few bids, and the agent offers the same few bids again and again. Without the pool
+ * 	  every repeat is a new int[] held by the opponent models and the frontier, and every offer decodes a new Bid.
+ * 	- The pool is direct-mapped by the key of the bid (see BidEncoder.getKey): a bid evicts the bid in its slot, so the
+ * 	  pool never holds more than POOL_SIZE bids and never allocates after it is created. The encodings are compared
+ * 	  on a hit, so a hash collision of a non-packable domain only costs an eviction.
+ * 	- An interned encoding is shared, so it must never be modified. Two interned encodings of the same bid are
+ * 	  the same instance as long as neither is evicted, which makes == a fast path for Arrays.equals.
+ * Only the thread of the agent uses the pool.
+ * */
+public class BidPool {
+
+	private static final int POOL_SIZE = 1 << 12; // Must be a power of 2
+
+	private BidEncoder bidEncoder = null;
+	private long[] keys = null; // -1 if the slot is empty
+	private int[][] encodedBids = null;
+	private Bid[] bids = null; // Decoded bid of each slot, null until it is needed
+
+	public BidPool(BidEncoder bidEncoder) {
+		this.bidEncoder = bidEncoder;
+
+		keys = new long[POOL_SIZE];
+		encodedBids = new int[POOL_SIZE][];
+		bids = new Bid[POOL_SIZE];
+
+		Arrays.fill(keys, -1);
+	}
+
+	private int getSlot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & (POOL_SIZE - 1);
+	}
+
+	/* Returns the slot of the encoded bid, after putting it into the pool if it is not there */
+	private int put(int[] encodedBid) {
+		long key = bidEncoder.getKey(encodedBid);
+		int slot = getSlot(key);
+
+		if (keys[slot] == key && (encodedBids[slot] == encodedBid || Arrays.equals(encodedBids[slot], encodedBid))) {
+			if (AgentMetrics.ENABLED)
+				AgentMetrics.countBidPoolHit();
+
+			return slot;
+		}
+
+		if (AgentMetrics.ENABLED)
+			AgentMetrics.countBidPoolMiss();
+
+		keys[slot] = key;
+		encodedBids[slot] = encodedBid;
+		bids[slot] = null;
+
+		return slot;
+	}
+
+	/* Returns the interned encoding of the bid */
+	public int[] intern(int[] encodedBid) {
+		return encodedBids[put(encodedBid)];
+	}
+
+	/* Encodes a received bid, and keeps the Bid so it is not decoded again if it is offered back.
+	   With real issues, bids that differ only within a discretization step share a slot and its Bid, so an Accept
+	   must use the received Bid itself rather than the Bid of the pool */
+	public int[] encode(Bid bid) {
+		int slot = put(bidEncoder.encode(bid));
+
+		if (bids[slot] == null)
+			bids[slot] = bid;
+
+		return encodedBids[slot];
+	}
+
+	/* Returns the Bid of the encoded bid, decoded once for as long as it stays in the pool */
+	public Bid decode(int[] encodedBid) {
+		int slot = put(encodedBid);
+
+		if (bids[slot] == null)
+			bids[slot] = bidEncoder.decode(encodedBids[slot]);
+
+		return bids[slot];
+	}
+}
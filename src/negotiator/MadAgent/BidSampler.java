@@ -0,0 +1,191 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- THRESHOLD-CONSTRAINED BID SAMPLER --------------------------------
+ * Draws a random bid whose utility is greater than or equal to a threshold t.
+ * For additive utility spaces:
+ * 	- suffixMax[i] and suffixMin[i] are the maximum and minimum utility the issues i, i+1, ..., n-1 can add.
+ * 	  If t <= suffixMin[0] every bid qualifies, and if t > suffixMax[0] no bid qualifies.
+ * 	- Each contribution is quantized (rounded down) to 1 / RESOLUTION, and counts[i][r] holds the number of ways
+ * 	  the issues i, ..., n-1 can add at least r quanta. Walking the issues and choosing each value with probability
+ * 	  proportional to the number of completions gives a uniform draw among the bids whose quantized utility is at least t.
+ * 	  Since the quantized utility is never greater than the real utility, every drawn bid satisfies the threshold.
+ * 	- If the quantized space is empty (t is within n / RESOLUTION of the maximum) or the domain is too large for the
+ * 	  count table, values are tried in random order and a value is kept if partial + value + suffixMax[i + 1] >= t.
+ * 	  Since suffixMax is exact, a kept value always has a completion, so this never backtracks.
+ * Both paths return in time linear in the number of values, regardless of how high the threshold is.
+ * For non-additive utility spaces, the bid is searched by a NonlinearBidSearch (the given one, or one of its own), which
+ * stops when the compute budget of the turn is exhausted (see ComputeBudget).
+ * */
+public class BidSampler {
+
+	private static final int RESOLUTION = 1000;
+	private static final long MAXIMUM_COUNT_TABLE_WORK = 50000000L;
+	private static final double EPSILON = 1e-12;
+
+	private UtilityEvaluator utilityEvaluator = null;
+	private BidEncoder bidEncoder = null;
+	private NonlinearBidSearch nonlinearBidSearch = null;
+	private int numberOfIssues = 0;
+	private double[] suffixMax = null;
+	private double[] suffixMin = null;
+	private int[][] quanta = null; // Quantized contribution of each value
+	private double[][] counts = null; // counts[i][r] -> Number of completions of issues i, ..., n-1 with at least r quanta
+
+	public BidSampler(UtilityEvaluator utilityEvaluator) {
+		this(utilityEvaluator, null);
+	}
+
+	public BidSampler(UtilityEvaluator utilityEvaluator, NonlinearBidSearch nonlinearBidSearch) {
+		this.utilityEvaluator = utilityEvaluator;
+		this.bidEncoder = utilityEvaluator.getBidEncoder();
+		this.nonlinearBidSearch = (nonlinearBidSearch == null && !utilityEvaluator.isAdditive()) ? new NonlinearBidSearch(utilityEvaluator) : nonlinearBidSearch;
+
+		numberOfIssues = bidEncoder.getNumberOfIssues();
+
+		if (utilityEvaluator.isAdditive()) {
+			calculateBounds();
+			calculateCounts();
+		}
+	}
+
+	private void calculateBounds() {
+		suffixMax = new double[numberOfIssues + 1];
+		suffixMin = new double[numberOfIssues + 1];
+
+		for (int i = numberOfIssues - 1; i >= 0; i--) {
+			double max = Double.NEGATIVE_INFINITY;
+			double min = Double.POSITIVE_INFINITY;
+
+			for (int v = 0; v < bidEncoder.getNumberOfValues(i); v++) {
+				max = Math.max(max, utilityEvaluator.getContribution(i, v));
+				min = Math.min(min, utilityEvaluator.getContribution(i, v));
+			}
+
+			suffixMax[i] = suffixMax[i + 1] + max;
+			suffixMin[i] = suffixMin[i + 1] + min;
+		}
+	}
+
+	private void calculateCounts() {
+		long work = 0;
+
+		for (int i = 0; i < numberOfIssues; i++)
+			work += (long) bidEncoder.getNumberOfValues(i) * (RESOLUTION + 1);
+
+		if (work > MAXIMUM_COUNT_TABLE_WORK)
+			return; // Only the bounded search will be used
+
+		quanta = new int[numberOfIssues][];
+		counts = new double[numberOfIssues + 1][RESOLUTION + 1];
+		counts[numberOfIssues][0] = 1;
+
+		for (int i = numberOfIssues - 1; i >= 0; i--) {
+			quanta[i] = new int[bidEncoder.getNumberOfValues(i)];
+
+			for (int v = 0; v < quanta[i].length; v++)
+				quanta[i][v] = Math.max(0, (int) Math.floor(utilityEvaluator.getContribution(i, v) * RESOLUTION + EPSILON));
+
+			for (int r = 0; r <= RESOLUTION; r++)
+				for (int v = 0; v < quanta[i].length; v++)
+					counts[i][r] += counts[i + 1][Math.max(0, r - quanta[i][v])];
+		}
+	}
+
+	/* Returns a random bid with utility >= threshold, or null if there is no such bid (or none could be found) */
+	public int[] sample(double threshold, SplittableRandom random) {
+		return sample(threshold, random, null);
+	}
+
+	/* The budget may be null, then the search of a non-additive space is bounded only by its number of steps */
+	public int[] sample(double threshold, SplittableRandom random, ComputeBudget budget) {
+		if (!utilityEvaluator.isAdditive())
+			return nonlinearBidSearch.search(threshold, random, budget);
+
+		if (threshold > suffixMax[0] + EPSILON)
+			return null;
+		if (threshold <= suffixMin[0])
+			return getRandomBid(random);
+
+		int[] bid = null;
+		int requiredQuanta = (int) Math.ceil(threshold * RESOLUTION - EPSILON);
+
+		if (counts != null && requiredQuanta <= RESOLUTION && counts[0][Math.max(0, requiredQuanta)] > 0)
+			bid = sampleByCounts(Math.max(0, requiredQuanta), random);
+
+		if (bid == null || utilityEvaluator.getUtility(bid) < threshold)
+			bid = sampleByBounds(threshold, random);
+
+		return bid;
+	}
+
+	private int[] sampleByCounts(int requiredQuanta, SplittableRandom random) {
+		int[] bid = new int[numberOfIssues];
+
+		for (int i = 0, r = requiredQuanta; i < numberOfIssues; i++) {
+			double target = random.nextDouble() * counts[i][r];
+			int chosen = -1;
+
+			for (int v = 0; v < quanta[i].length; v++) {
+				double count = counts[i + 1][Math.max(0, r - quanta[i][v])];
+
+				if (count > 0) {
+					chosen = v;
+					target -= count;
+
+					if (target < 0)
+						break;
+				}
+			}
+
+			bid[i] = chosen;
+			r = Math.max(0, r - quanta[i][chosen]);
+		}
+
+		return bid;
+	}
+
+	private int[] sampleByBounds(double threshold, SplittableRandom random) {
+		int[] bid = new int[numberOfIssues];
+		double partial = 0;
+
+		for (int i = 0; i < numberOfIssues; i++) {
+			int numberOfValues = bidEncoder.getNumberOfValues(i);
+			int start = random.nextInt(numberOfValues);
+			int best = start;
+
+			/* Values are visited in a random rotation, the first one that keeps the threshold reachable is chosen */
+			for (int k = 0; k < numberOfValues; k++) {
+				int v = (start + k) % numberOfValues;
+
+				if (utilityEvaluator.getContribution(i, v) > utilityEvaluator.getContribution(i, best))
+					best = v;
+
+				if (partial + utilityEvaluator.getContribution(i, v) + suffixMax[i + 1] >= threshold - EPSILON) {
+					best = v;
+					break;
+				}
+			}
+
+			bid[i] = best;
+			partial += utilityEvaluator.getContribution(i, best);
+		}
+
+		return bid;
+	}
+
+	public int[] getRandomBid(SplittableRandom random) {
+		int[] bid = new int[numberOfIssues];
+
+		for (int i = 0; i < numberOfIssues; i++)
+			bid[i] = random.nextInt(bidEncoder.getNumberOfValues(i));
+
+		return bid;
+	}
+
+	/* Maximum utility a bid can have, only valid for additive spaces */
+	public double getMaximumUtility() {
+		return suffixMax[0];
+	}
+}
@@ -0,0 +1,89 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- TOP-K BID SELECTOR --------------------------------
+ * Yields a list of encoded bids in descending order of utility, without sorting the whole list.
+ * 	- The utility of each bid is computed once and kept in a parallel array, so no utility is computed while comparing.
+ * 	- The bid indices are arranged in a binary max-heap in linear time. The k-th best bid is found by removing
+ * 	  the top of the heap k + 1 times, so getting the first k bids costs O(n + k log n) instead of O(n log n).
+ * 	- Bids with the same utility keep their order in the given list, as with a stable sort.
+ * */
+public class BidSelector {
+
+	private List<int[]> bids = null;
+	private double[] utilities = null;
+	private int[] heap = null; // Indices of the bids that are not selected yet, as a max-heap
+	private int heapSize = 0;
+	private int[] selected = null; // selected[r] -> Index of the bid with rank r
+	private int numberOfSelectedBids = 0;
+
+	public BidSelector(List<int[]> bids, UtilityEvaluator utilityEvaluator) {
+		this.bids = bids;
+
+		utilities = new double[bids.size()];
+		heap = new int[bids.size()];
+		selected = new int[bids.size()];
+		heapSize = bids.size();
+
+		for (int i = 0; i < bids.size(); i++) {
+			utilities[i] = utilityEvaluator.getUtility(bids.get(i));
+			heap[i] = i;
+		}
+
+		for (int i = heapSize / 2 - 1; i >= 0; i--)
+			siftDown(i);
+	}
+
+	/* Returns true if the bid with index a should come before the bid with index b */
+	private boolean isBefore(int a, int b) {
+		return utilities[a] > utilities[b] || (utilities[a] == utilities[b] && a < b);
+	}
+
+	private void siftDown(int position) {
+		int index = heap[position];
+
+		while (true) {
+			int child = 2 * position + 1;
+
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child]))
+				child++;
+			if (!isBefore(heap[child], index))
+				break;
+
+			heap[position] = heap[child];
+			position = child;
+		}
+
+		heap[position] = index;
+	}
+
+	private void selectNext() {
+		selected[numberOfSelectedBids++] = heap[0];
+		heap[0] = heap[--heapSize];
+		siftDown(0);
+	}
+
+	/* Returns the bid with the given rank (0 is the best bid), only the bids up to this rank are selected */
+	public int[] get(int rank) {
+		while (numberOfSelectedBids <= rank)
+			selectNext();
+
+		return bids.get(selected[rank]);
+	}
+
+	public double getUtility(int rank) {
+		get(rank);
+		return utilities[selected[rank]];
+	}
+
+	public int size() {
+		return bids.size();
+	}
+
+	public int getNumberOfSelectedBids() {
+		return numberOfSelectedBids;
+	}
+}
@@ -0,0 +1,41 @@
+package negotiator.MadAgent;
+
+import java.util.concurrent.*;
+
+/* -------------------------------- CANDIDATE PIPELINE --------------------------------
+ * Background threads that prepare the candidates of the next turn while the other parties act, shared by all
+ * the agents in the JVM.
+ * 	- Enabled with -Dmadagent.pipelined=true, otherwise everything is computed synchronously in chooseAction.
+ * 	- ENABLED is a constant, so when it is false no thread is started and the JIT removes the submissions.
+ * 	- The threads are daemons, so a session that never ends its negotiation does not keep the JVM alive.
+ * 	- Only agents with an additive utility space submit work: a non-additive space is evaluated through the utility
+ * 	  space of Genius and the cache of UtilityEvaluator, which are only used by the thread of the agent.
+ * A prepared result is stamped with the version of the opponent model it was computed for, and it is used only
+ * if the model has not changed since, so the agent makes exactly the same decisions with or without the pipeline.
+ * */
+public class CandidatePipeline {
+
+	public static final boolean ENABLED = Boolean.getBoolean("madagent.pipelined");
+
+	private static final ExecutorService EXECUTOR = ENABLED ? createExecutor() : null;
+
+	private static ExecutorService createExecutor() {
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "MadAgent pipeline");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/* The callers check ENABLED before submitting, so this is never called when the pipeline is disabled */
+	public static void submit(Runnable task) {
+		try {
+			EXECUTOR.execute(task);
+		} catch (RejectedExecutionException e) {
+			System.err.println("An exception thrown while submitting a precomputation..");
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package negotiator.MadAgent;
+
+import negotiator.timeline.TimeLineInfo;
+
+/* -------------------------------- COMPUTE BUDGET --------------------------------
+ * In a time limited negotiation, the time spent in chooseAction is taken from the negotiation, so the search
+ * done in a turn is capped by a budget:
+ * 	- The time the other parties take between our turns (from the end of our turn to the start of the next one)
+ * 	  is averaged with exponential smoothing. Our own turns are left out: the budget sets how long they take,
+ * 	  so a round duration that included them would grow whenever the budget grows and feed back into it.
+ * 	- A round is our turn plus the time of the others, and our turn is meant to be SHARE_OF_ROUND of it, so a round
+ * 	  takes the time of the others / (1 - SHARE_OF_ROUND). The number of rounds remaining is estimated as the remaining
+ * 	  time over that duration (at least 1).
+ * 	- The budget of a turn is SHARE_OF_ROUND of the time per remaining round: budget = SHARE_OF_ROUND * remaining time
+ * 	  / rounds remaining. While many rounds remain it follows the speed of the opponents only, and in the last round
+ * 	  it shrinks with the remaining time.
+ * Searches check isExhausted and fall back to cached candidates once the budget of the turn is spent.
+ * In a round limited negotiation there is no budget and isExhausted is always false.
+ * */
+public class ComputeBudget {
+
+	private static final double SMOOTHING = 0.2;
+	private static final double SHARE_OF_ROUND = 0.25;
+	private static final long MINIMUM_BUDGET = 200000; // 0.2 ms, in nanoseconds
+	private static final long INITIAL_BUDGET = 5000000; // 5 ms, used until the duration of a round is known
+
+	private TimeLineInfo timeline = null;
+	private boolean timeLimited = false;
+	private double averageOpponentsDuration = -1; // In nanoseconds, between the end of our turn and the start of the next one
+	private long turnEndTime = -1;
+	private long turnDeadline = Long.MAX_VALUE;
+	private boolean exhausted = false;
+
+	public ComputeBudget(TimeLineInfo timeline, boolean timeLimited) {
+		this.timeline = timeline;
+		this.timeLimited = timeLimited;
+	}
+
+	public void startTurn() {
+		if (!timeLimited)
+			return;
+
+		long now = System.nanoTime();
+
+		if (turnEndTime >= 0)
+			averageOpponentsDuration = smooth(averageOpponentsDuration, now - turnEndTime);
+
+		turnDeadline = now + getBudget();
+		exhausted = false;
+	}
+
+	public void endTurn() {
+		if (!timeLimited)
+			return;
+
+		turnEndTime = System.nanoTime();
+
+		if (exhausted && AgentMetrics.ENABLED)
+			AgentMetrics.countExhaustedTurn();
+	}
+
+	private static double smooth(double average, double value) {
+		return (average < 0) ? value : (1 - SMOOTHING) * average + SMOOTHING * value;
+	}
+
+	/* Budget of the next turn in nanoseconds */
+	public long getBudget() {
+		if (averageOpponentsDuration < 0)
+			return INITIAL_BUDGET;
+
+		return (long) Math.max(MINIMUM_BUDGET, SHARE_OF_ROUND * getRemainingTime() / getEstimatedRoundsRemaining());
+	}
+
+	/* Estimated with the round our turn is meant to take a share of, not the measured one, which the budget sets */
+	private double getEstimatedRoundsRemaining() {
+		double roundDuration = averageOpponentsDuration / (1 - SHARE_OF_ROUND);
+
+		if (roundDuration <= 0)
+			return Double.POSITIVE_INFINITY;
+
+		return Math.max(1, getRemainingTime() / roundDuration);
+	}
+
+	private double getRemainingTime() {
+		return Math.max(0, timeline.getTotalTime() - timeline.getCurrentTime()) * 1e9;
+	}
+
+	public boolean isExhausted() {
+		if (timeLimited && !exhausted && System.nanoTime() > turnDeadline)
+			exhausted = true;
+
+		return exhausted;
+	}
+}
@@ -0,0 +1,98 @@
+package negotiator.MadAgent;
+
+/* -------------------------------- ENUMERATED OUTCOME SPACE --------------------------------
+ * Yields the bids of a small non-additive utility space in descending order of utility, as SortedOutcomeSpace does.
+ * 	- Additive spaces never need it: their best and second best bids come from the utility tables, and their nice
+ * 	  bids are sampled from the tables too. Larger non-additive spaces are searched by NonlinearBidSearch instead.
+ * 	- The outcome space is enumerated once by counting through the value indices of the encoded bids, so no Bid is
+ * 	  created for an outcome, and each utility is computed once into a parallel array.
+ * 	- The indices of the bids are sorted by a merge sort over the utility array, so nothing is boxed while sorting.
+ * 	  Bids with the same utility keep their order of enumeration.
+ * */
+public class EnumeratedOutcomeSpace {
+
+	private int[][] bids = null; // In descending order of utility
+	private double[] utilities = null;
+
+	public EnumeratedOutcomeSpace(UtilityEvaluator utilityEvaluator) {
+		BidEncoder bidEncoder = utilityEvaluator.getBidEncoder();
+		int numberOfIssues = bidEncoder.getNumberOfIssues();
+		int numberOfBids = (int) bidEncoder.getNumberOfBids();
+		int[][] unsortedBids = new int[numberOfBids][];
+		double[] unsortedUtilities = new double[numberOfBids];
+		int[] order = new int[numberOfBids];
+		int[] bid = new int[numberOfIssues];
+
+		for (int b = 0; b < numberOfBids; b++) {
+			unsortedBids[b] = bid.clone();
+			unsortedUtilities[b] = utilityEvaluator.getUtility(unsortedBids[b]);
+			order[b] = b;
+
+			/* The next bid, counting with the last issue as the lowest digit */
+			for (int i = numberOfIssues - 1; i >= 0 && ++bid[i] == bidEncoder.getNumberOfValues(i); i--)
+				bid[i] = 0;
+		}
+
+		sort(order, new int[numberOfBids], unsortedUtilities, 0, numberOfBids);
+
+		bids = new int[numberOfBids][];
+		utilities = new double[numberOfBids];
+
+		for (int r = 0; r < numberOfBids; r++) {
+			bids[r] = unsortedBids[order[r]];
+			utilities[r] = unsortedUtilities[order[r]];
+		}
+	}
+
+	/* Stable merge sort of order[from, to) in descending order of utility, buffer is as long as order */
+	private static void sort(int[] order, int[] buffer, double[] utilities, int from, int to) {
+		if (to - from < 2)
+			return;
+
+		int middle = (from + to) >>> 1;
+
+		sort(order, buffer, utilities, from, middle);
+		sort(order, buffer, utilities, middle, to);
+
+		if (utilities[order[middle - 1]] >= utilities[order[middle]])
+			return;
+
+		System.arraycopy(order, from, buffer, from, to - from);
+
+		for (int k = from, left = from, right = middle; k < to; k++) {
+			if (right >= to || (left < middle && utilities[buffer[left]] >= utilities[buffer[right]]))
+				order[k] = buffer[left++];
+			else
+				order[k] = buffer[right++];
+		}
+	}
+
+	public int[] getMaxBidPossible() {
+		return bids[0];
+	}
+
+	/* Returns the bid whose utility is nearest to the given utility */
+	public int[] getBidNearUtility(double utility) {
+		/* Binary search on the utilities, which are in descending order */
+		int low = 0;
+		int high = bids.length - 1;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (utilities[middle] >= utility)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		if (low > 0 && Math.abs(utilities[low - 1] - utility) <= Math.abs(utilities[low] - utility))
+			low--;
+
+		return bids[low];
+	}
+
+	public int size() {
+		return bids.length;
+	}
+}
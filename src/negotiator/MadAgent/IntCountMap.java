@@ -0,0 +1,93 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- OPEN-ADDRESSING COUNT MAP --------------------------------
+ * Maps non-negative int keys to int counts with linear probing, without boxing.
+ * Used for issues whose value range is too wide for a dense count array (integer and real issues).
+ * Keys are never removed, so an empty slot is marked with -1 and the map only allocates when it grows.
+ * */
+public class IntCountMap {
+
+	private static final int INITIAL_CAPACITY = 16; // Must be a power of 2
+	private static final double LOAD_FACTOR = 0.5;
+
+	private int[] keys = null;
+	private int[] counts = null;
+	private int size = 0;
+
+	public IntCountMap() {
+		keys = new int[INITIAL_CAPACITY];
+		counts = new int[INITIAL_CAPACITY];
+
+		Arrays.fill(keys, -1);
+	}
+
+	private int indexOf(int key) {
+		int mask = keys.length - 1;
+		int hash = key * 0x9E3779B9;
+		int index = (hash ^ (hash >>> 16)) & mask;
+
+		while (keys[index] != -1 && keys[index] != key)
+			index = (index + 1) & mask;
+
+		return index;
+	}
+
+	public int get(int key) {
+		int index = indexOf(key);
+		return (keys[index] == key) ? counts[index] : 0;
+	}
+
+	/* Increments the count of the key and returns the new count */
+	public int increment(int key) {
+		int index = indexOf(key);
+
+		if (keys[index] != key) {
+			if (size + 1 > keys.length * LOAD_FACTOR) {
+				grow();
+				index = indexOf(key);
+			}
+
+			keys[index] = key;
+			size++;
+		}
+
+		return ++counts[index];
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldCounts = counts;
+
+		keys = new int[oldKeys.length * 2];
+		counts = new int[oldKeys.length * 2];
+		Arrays.fill(keys, -1);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != -1) {
+				int index = indexOf(oldKeys[i]);
+
+				keys[index] = oldKeys[i];
+				counts[index] = oldCounts[i];
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* Slots are iterated from 0 to getCapacity() - 1, a slot is empty if its key is -1 */
+	public int getCapacity() {
+		return keys.length;
+	}
+
+	public int getKeyAt(int slot) {
+		return keys[slot];
+	}
+
+	public int getCountAt(int slot) {
+		return counts[slot];
+	}
+}
@@ -0,0 +1,165 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- LAZY SORTED OUTCOME SPACE --------------------------------
+ * Yields the bids of an additive utility space in descending order of utility without enumerating the outcome space.
+ * 	- The values of each issue are ranked by their contribution, so a bid can be described by the rank of its value
+ * 	  in each issue. The bid with all ranks 0 is the best bid.
+ * 	- Increasing a rank never increases the utility. The parent of a rank vector is obtained by decreasing its last
+ * 	  nonzero rank, so every rank vector has exactly one parent and its children are obtained by increasing a rank at
+ * 	  or after its last nonzero rank.
+ * 	- Walking this tree best-first with a priority queue yields the bids in descending utility order, and only the
+ * 	  bids that are actually walked (plus their children in the queue) are ever stored, so the memory is bounded by
+ * 	  how far down the ranking the agent walks. The walk stops at MAXIMUM_NUMBER_OF_WALKED_BIDS bids.
+ * Non-additive spaces have no contributions to rank, the small ones are enumerated by EnumeratedOutcomeSpace instead.
+ * */
+public class LazySortedOutcomeSpace {
+
+	private static final int MAXIMUM_NUMBER_OF_WALKED_BIDS = 1000000;
+
+	private static class Node {
+		private int[] ranks;
+		private int lastChangedIssue;
+		private double utility;
+	}
+
+	private UtilityEvaluator utilityEvaluator = null;
+	private int numberOfIssues = 0;
+	private int[][] rankings = null; // rankings[i][r] -> Value index of the r-th best value of the i-th issue
+	private PriorityQueue<Node> queue = null;
+	private List<int[]> walkedBids = new ArrayList<int[]>();
+	private double[] walkedUtilities = new double[16];
+
+	public LazySortedOutcomeSpace(UtilityEvaluator utilityEvaluator) {
+		if (!utilityEvaluator.isAdditive())
+			throw new IllegalArgumentException("Only additive utility spaces can be walked lazily");
+
+		this.utilityEvaluator = utilityEvaluator;
+
+		numberOfIssues = utilityEvaluator.getBidEncoder().getNumberOfIssues();
+		rankings = new int[numberOfIssues][];
+
+		for (int i = 0; i < numberOfIssues; i++)
+			rankings[i] = rank(i);
+
+		queue = new PriorityQueue<Node>(11, new Comparator<Node>() {
+			@Override
+			public int compare(Node a, Node b) {
+				return Double.compare(b.utility, a.utility);
+			}
+		});
+
+		Node root = new Node();
+		root.ranks = new int[numberOfIssues];
+		root.lastChangedIssue = 0;
+		root.utility = utilityEvaluator.getUtility(toBid(root.ranks));
+
+		queue.add(root);
+	}
+
+	/* Value indices of the issue in descending order of contribution */
+	private int[] rank(int issue) {
+		int numberOfValues = utilityEvaluator.getBidEncoder().getNumberOfValues(issue);
+		Integer[] values = new Integer[numberOfValues];
+
+		for (int v = 0; v < numberOfValues; v++)
+			values[v] = v;
+
+		final int i = issue;
+
+		Arrays.sort(values, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(utilityEvaluator.getContribution(i, b), utilityEvaluator.getContribution(i, a));
+			}
+		});
+
+		int[] ranking = new int[numberOfValues];
+
+		for (int r = 0; r < numberOfValues; r++)
+			ranking[r] = values[r];
+
+		return ranking;
+	}
+
+	private int[] toBid(int[] ranks) {
+		int[] bid = new int[numberOfIssues];
+
+		for (int i = 0; i < numberOfIssues; i++)
+			bid[i] = rankings[i][ranks[i]];
+
+		return bid;
+	}
+
+	/* Walks one more bid down the ranking, returns false if the outcome space (or the walk) is exhausted */
+	private boolean walk() {
+		if (queue.isEmpty() || walkedBids.size() >= MAXIMUM_NUMBER_OF_WALKED_BIDS)
+			return false;
+
+		Node node = queue.poll();
+
+		for (int i = node.lastChangedIssue; i < numberOfIssues; i++) {
+			if (node.ranks[i] + 1 < rankings[i].length) {
+				Node child = new Node();
+
+				child.ranks = node.ranks.clone();
+				child.ranks[i]++;
+				child.lastChangedIssue = i;
+				child.utility = utilityEvaluator.getUtility(toBid(child.ranks)); // Summed like any other bid, so the utilities agree exactly
+
+				queue.add(child);
+			}
+		}
+
+		if (walkedBids.size() == walkedUtilities.length)
+			walkedUtilities = Arrays.copyOf(walkedUtilities, walkedUtilities.length * 2);
+
+		walkedUtilities[walkedBids.size()] = node.utility;
+		walkedBids.add(toBid(node.ranks));
+		return true;
+	}
+
+	/* Returns the bid at the given rank (0 is the best bid), or null if there are not that many bids */
+	public int[] getBid(int rank) {
+		while (walkedBids.size() <= rank)
+			if (!walk())
+				return null;
+
+		return walkedBids.get(rank);
+	}
+
+	/* Utility of the bid at the given rank, -1 if there are not that many bids */
+	public double getUtility(int rank) {
+		return (getBid(rank) != null) ? walkedUtilities[rank] : -1;
+	}
+
+	/* Returns the bid whose utility is nearest to the given utility, walking only as far as the given utility */
+	public int[] getBidNearUtility(double utility) {
+		while (walkedBids.isEmpty() || walkedUtilities[walkedBids.size() - 1] >= utility)
+			if (!walk())
+				break;
+
+		/* Binary search on the walked utilities, which are in descending order */
+		int low = 0;
+		int high = walkedBids.size() - 1;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (walkedUtilities[middle] >= utility)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		if (low > 0 && Math.abs(walkedUtilities[low - 1] - utility) <= Math.abs(walkedUtilities[low] - utility))
+			low--;
+
+		return walkedBids.get(low);
+	}
+
+	public int getNumberOfWalkedBids() {
+		return walkedBids.size();
+	}
+}
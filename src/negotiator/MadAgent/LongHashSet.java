@@ -0,0 +1,78 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- OPEN-ADDRESSING LONG SET --------------------------------
+ * Set of non-negative long keys with linear probing, without boxing, for the packed keys of bids (see BidEncoder).
+ * Keys are never removed, so an empty slot is marked with -1 and the set only allocates when it grows.
+ * */
+public class LongHashSet {
+
+	private static final int INITIAL_CAPACITY = 64; // Must be a power of 2
+	private static final double LOAD_FACTOR = 0.5;
+
+	private long[] keys = null;
+	private int size = 0;
+
+	public LongHashSet() {
+		keys = new long[INITIAL_CAPACITY];
+
+		Arrays.fill(keys, -1);
+	}
+
+	private int indexOf(long key) {
+		int mask = keys.length - 1;
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int index = (int) (hash ^ (hash >>> 32)) & mask;
+
+		while (keys[index] != -1 && keys[index] != key)
+			index = (index + 1) & mask;
+
+		return index;
+	}
+
+	public boolean contains(long key) {
+		return keys[indexOf(key)] == key;
+	}
+
+	/* Returns true if the key was not in the set */
+	public boolean add(long key) {
+		int index = indexOf(key);
+
+		if (keys[index] == key)
+			return false;
+
+		if (size + 1 > keys.length * LOAD_FACTOR) {
+			grow();
+			index = indexOf(key);
+		}
+
+		keys[index] = key;
+		size++;
+		return true;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, -1);
+
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != -1)
+				keys[indexOf(oldKeys[i])] = oldKeys[i];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* Slots are iterated from 0 to getCapacity() - 1, a slot is empty if its key is -1 */
+	public int getCapacity() {
+		return keys.length;
+	}
+
+	public long getKeyAt(int slot) {
+		return keys[slot];
+	}
+}
@@ -1,18 +1,15 @@
 package negotiator.MadAgent;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import negotiator.*;
 import negotiator.actions.*;
-import negotiator.boaframework.SortedOutcomeSpace;
 import negotiator.parties.AbstractNegotiationParty;
 import negotiator.parties.NegotiationInfo;
 import negotiator.persistent.*;
 
 public class MadAgent extends AbstractNegotiationParty {
 
-	private static final Random RANDOM = new Random();
-	private static final int MAXIMUM_NUMBER_OF_TRIALS = 2000;	
-
 	/* -------------------------------- RISK FUNCTION  --------------------------------
 	 * f <- Round number to fake (Agent will fake in every f rounds)
 	 * c <- Risk constant
@@ -23,53 +20,103 @@ public class MadAgent extends AbstractNegotiationParty {
 	private static final double RISK_CONSTANT = 100000;
 	private static final double RISK_PARAMETER = 5; // Risk Parameter: 0, 1, 2, ..., 8, 9, 10
 	private static final int ROUND_NUMBER_TO_FAKE = (int) (RISK_CONSTANT / Math.pow(2, RISK_PARAMETER));
+	
+	/* Bounds of the values warm-started from the previous sessions */
+	private static final double MINIMUM_WARM_THRESHOLD = 0.6;
+	private static final double MAXIMUM_WARM_THRESHOLD = 0.95;
+	private static final double MINIMUM_TIME_TO_GET_MAD = 0.6;
+	private static final double MAXIMUM_TIME_TO_GET_MAD = 0.8;
+	
+	/* Bounds of the search for a bid that was not offered before, a repeat is offered if none is found */
+	private static final int MAXIMUM_NUMBER_OF_RESAMPLES = 4;
+	private static final int MAXIMUM_NUMBER_OF_SKIPPED_RANKS = 8;
+	
+	/* A non-additive outcome space is enumerated and sorted only up to this size, larger ones are searched */
+	private static final double MAXIMUM_NUMBER_OF_SORTED_BIDS = 100000;
 
-	private SortedOutcomeSpace sortedOutcomeSpace = null;
-	private Bid lastReceivedBid = null;
-	private Bid bestReceivedBid = null;
-	private Bid secondBestBid = null;
+	private SplittableRandom random = null; // Source of all the random choices of this agent, seeded per session
+	private BidEncoder bidEncoder = null;
+	private BidPool bidPool = null; // Shares one encoding and one Bid object between the repeats of a bid
+	private UtilityEvaluator utilityEvaluator = null;
+	private BidSampler bidSampler = null;
+	private EnumeratedOutcomeSpace sortedOutcomeSpace = null; // Only for small non-additive spaces
+	private LazySortedOutcomeSpace lazySortedOutcomeSpace = null; // Only for additive spaces, walked only as far as the new bids go
+	private int firstNewRank = 0; // Rank of the first bid of the lazy outcome space that was not offered yet
+	private NonlinearBidSearch nonlinearBidSearch = null; // Only for non-additive spaces
+	private ComputeBudget computeBudget = null; // Caps the search of a turn in time limited negotiations
+	private ParetoFrontier paretoFrontier = null; // Frontier of the candidate bids over our utility and the opponents' estimates
+	private SeenBids offeredBids = null; // Our offers, so the candidate generation can prefer new bids
+	private SeenBids receivedBids = null; // Offers of the opponents, so a repeated offer is not processed as a candidate again
+	/* Bids are kept encoded (see BidEncoder) and decoded only when an Offer/Accept is emitted */
+	private int[] lastReceivedBid = null;
+	private Bid lastReceivedOffer = null; // The received Bid itself, the one that is accepted
+	private int[] bestReceivedBid = null;
+	private int[] maxUtilityBid = null;
+	private int[] secondBestBid = null;
+	private int[] lastNiceBid = null; // Cached candidate, offered again if the budget runs out before a new one is found
+	private double lastReceivedUtility = 0;
+	private double bestReceivedUtility = -1; // -1 while there is no best received bid
 	private String negotiationType = null;
 	private double negotiationLimit = 0;
 	private double numberOfRoundsPassed = 0;
 	private double timeToGetAlmostMad = 0;
 	private double timeToGetMad = 0;
 	private double threshold = 0.8;
+	private int roundNumberToFake = ROUND_NUMBER_TO_FAKE;
 	private double currentThreshold = 0.8;
 	/* Variables for Opponent Modeling */
-	private int opponentTurn = 0; // Value to keep track opponents
-	private int myTurn = 0; // Random value to choose one of the opponents and use its preferences while generating bid
-	private int shiftBids[] = null; // Index for bidsPreferredByOpponents for each opponent
-	private OpponentModel[] opponentModels = null; // Opponent Model for each opponent.
-	private List<List<Bid>> bidsPreferredByOpponents = null; // bidsPrefferredByOpponents for each opponent
+	private Map<AgentID, Opponent> opponents = null; // Opponent for each party, keyed by the AgentID of the party
+	private List<Opponent> opponentList = null; // All the opponents and the aggregate opponent, to choose one randomly
+	private Opponent aggregateOpponent = null; // Opponent Model of all the offers, regardless of the sender
+	private Opponent myTurn = null; // Random opponent whose preferences are used while generating bid
+
+	/* In the pipelined mode, the opponent model is updated and read under the lock of its Opponent,
+	   since the preferred bids are prepared in the background (see CandidatePipeline) */
+	private class Opponent {
+		private OpponentModel opponentModel = null;
+		private BidSelector bidsPreferredByOpponent = null; // Yields the acceptable bids in descending order of utility
+		private int shiftBids = 0; // Rank for bidsPreferredByOpponent
+		private long modelVersion = -1; // Version of the opponent model that bidsPreferredByOpponent is computed for
+		private volatile PreparedBids preparedBids = null; // Prepared in the background for the next turn
+		private AtomicBoolean preparing = new AtomicBoolean(); // True while a preparation is submitted and not started yet
+	}
+
+	private static class PreparedBids {
+		private long modelVersion = -1;
+		private BidSelector bidsPreferredByOpponent = null;
+	}
 
 	@Override
 	public void init(NegotiationInfo info) {
 		super.init(info);
 		
-		System.out.println("Discount Factor is " + info.getUtilitySpace().getDiscountFactor());
-		System.out.println("Reservation Value is " + info.getUtilitySpace().getReservationValueUndiscounted());
-
-		sortedOutcomeSpace = new SortedOutcomeSpace(utilitySpace);	
-		threshold *= 1.125;
+		/* The seed of the session is mixed with the id of the party, so every agent in a session draws differently
+		   but a session with the same seed is replayed exactly, without sharing a generator between the sessions */
+		random = new SplittableRandom(31 * info.getRandomSeed() + ((getPartyId() != null) ? getPartyId().toString().hashCode() : 0));
 		
-		shiftBids = new int[3];
-		opponentModels = new OpponentModel[3];
-		bidsPreferredByOpponents = new ArrayList<List<Bid>>();
+		bidEncoder = new BidEncoder(utilitySpace.getDomain());
+		bidPool = new BidPool(bidEncoder);
+		utilityEvaluator = new UtilityEvaluator(utilitySpace, bidEncoder);
 		
-		// Filling the array with empty values to avoid 'Null Pointer Exception'
-		for (int i = 0; i < 3; i++) {
-			opponentModels[i] = new OpponentModel(utilitySpace, threshold);
-			bidsPreferredByOpponents.add(null);
+		/* Additive spaces are searched through their utility tables, the others (e.g. non-linear spaces) by local search */
+		if (!utilityEvaluator.isAdditive()) {
+			nonlinearBidSearch = new NonlinearBidSearch(utilityEvaluator);
+			
+			if (bidEncoder.getNumberOfBids() <= MAXIMUM_NUMBER_OF_SORTED_BIDS)
+				sortedOutcomeSpace = new EnumeratedOutcomeSpace(utilityEvaluator);
+		} else {
+			lazySortedOutcomeSpace = new LazySortedOutcomeSpace(utilityEvaluator);
 		}
 		
-		try {
-			bestReceivedBid = utilitySpace.getMinUtilityBid();
-		} catch (Exception e) {
-			System.err.println("An exception thrown at init..");
-		}
+		bidSampler = new BidSampler(utilityEvaluator, nonlinearBidSearch);
+		paretoFrontier = new ParetoFrontier(utilityEvaluator);
+		offeredBids = new SeenBids(bidEncoder);
+		receivedBids = new SeenBids(bidEncoder);
+		threshold *= 1.125;
 		
 		negotiationType = info.getDeadline().getType().toString();
 		negotiationLimit = info.getDeadline().getValue();
+		computeBudget = new ComputeBudget(timeline, negotiationType.equals("TIME"));
 
 		/* This values will be used for adapting threshold */
 		timeToGetMad = negotiationLimit * 0.8; // Agent gets mad in the last 20% of the negotiation
@@ -78,21 +125,132 @@ public class MadAgent extends AbstractNegotiationParty {
 		if (getData().getPersistentDataType() != PersistentDataType.STANDARD)
 			throw new IllegalStateException("need standard persistent data");
 		
-		/* Agent calculates the second best bid */
+		/* The opponent models are created after the warm start, since they start from the threshold */
+		if (getData().get() instanceof StandardInfoList)
+			warmStart((StandardInfoList) getData().get());
+		
+		opponents = new HashMap<AgentID, Opponent>();
+		opponentList = new ArrayList<Opponent>();
+		aggregateOpponent = createOpponent();
+		
 		try {
+			/* The min utility bid is found by iterating the outcome space, so large non-additive spaces start without a best received bid */
+			if (nonlinearBidSearch == null || sortedOutcomeSpace != null) {
+				Bid minUtilityBid = utilitySpace.getMinUtilityBid();
+
+				bestReceivedBid = bidPool.encode(minUtilityBid);
+				bestReceivedUtility = utilitySpace.getUtility(minUtilityBid);
+			}
+		} catch (Exception e) {
+			System.err.println("An exception thrown at init..");
+		}
+		
+		/* Agent calculates the best and the second best bid */
+		try {
+			if (utilityEvaluator.isAdditive())
+				maxUtilityBid = utilityEvaluator.getBestBid();
+			else if (sortedOutcomeSpace != null)
+				maxUtilityBid = sortedOutcomeSpace.getMaxBidPossible();
+			else
+				maxUtilityBid = nonlinearBidSearch.getMaxBid(random);
+			
+			paretoFrontier.add(maxUtilityBid);
 			calculateSecondBestBid();
 		} catch (Exception e) {
 			System.err.println("An exception thrown while calculating the second best bid..");
 		}
 	}
 	
+	/* -------------------------------- WARM START --------------------------------
+	 * The previous sessions with the same profile tell where the negotiation usually ends:
+	 * 	- Threshold starts just above the utility of the previous agreements (or the best offers of the opponents),
+	 * 	  instead of being rediscovered through the boulware levels in every session.
+	 * 	- If the previous agreements came early, or the previous sessions often ended without an agreement,
+	 * 	  the agent gets mad earlier. It gets almost mad 30% of the negotiation before it gets mad, as by default.
+	 * 	- If the opponents usually agree, the agent fakes twice as often (the risk parameter is one higher),
+	 * 	  otherwise it fakes half as often.
+	 * */
+	private void warmStart(StandardInfoList history) {
+		SessionHistory sessionHistory = SessionHistory.get(getHistoryKey(), history, getOwnName());
+
+		if (sessionHistory.getNumberOfSessions() == 0)
+			return;
+
+		double target = Math.max(sessionHistory.getAgreementUtility(), sessionHistory.getBestOfferUtility());
+		double minimumThreshold = Math.max(MINIMUM_WARM_THRESHOLD, utilitySpace.getReservationValueUndiscounted());
+
+		if (target > 0)
+			threshold = Math.min(Math.max(target + 0.05, minimumThreshold), MAXIMUM_WARM_THRESHOLD);
+
+		double madTime = MAXIMUM_TIME_TO_GET_MAD - (MAXIMUM_TIME_TO_GET_MAD - MINIMUM_TIME_TO_GET_MAD) * (1 - sessionHistory.getAgreementRate());
+
+		if (sessionHistory.getAgreementTime() > 0)
+			madTime = Math.min(madTime, sessionHistory.getAgreementTime() - 0.05);
+
+		madTime = Math.max(madTime, MINIMUM_TIME_TO_GET_MAD);
+		timeToGetMad = negotiationLimit * madTime;
+		timeToGetAlmostMad = negotiationLimit * (madTime - 0.3);
+
+		double riskParameter = RISK_PARAMETER + ((sessionHistory.getAgreementRate() >= 0.5) ? 1 : -1);
+		roundNumberToFake = (int) (RISK_CONSTANT / Math.pow(2, riskParameter));
+	}
+
+	/* The history is kept for each domain and profile */
+	private String getHistoryKey() {
+		return utilitySpace.getDomain().getName() + "/" + utilitySpace.getName();
+	}
+
+	/* Name of the agent without the number of the session, e.g. MadAgent@12 -> MadAgent */
+	private String getOwnName() {
+		String name = (getPartyId() != null) ? getPartyId().toString() : getClass().getSimpleName();
+		return (name.indexOf('@') > 0) ? name.substring(0, name.indexOf('@')) : name.replaceAll("\\d+$", "");
+	}
+	
 	private void calculateSecondBestBid() throws Exception {
-		for (double u = utilitySpace.getUtility(utilitySpace.getMaxUtilityBid()); true; u -= 0.01) {
-			secondBestBid = sortedOutcomeSpace.getBidNearUtility(u).getBid();
+		/* For additive spaces it is computed directly from the utility tables, in time independent of the outcome space size */
+		if (utilityEvaluator.isAdditive()) {
+			secondBestBid = utilityEvaluator.getSecondBestBid();
+			return;
+		}
+		
+		/* For large non-additive spaces, it is the best bid below the max utility that the search has found */
+		if (sortedOutcomeSpace == null) {
+			secondBestBid = nonlinearBidSearch.getSecondBestBid();
+			return;
+		}
+		
+		double maxUtility = getUtility(maxUtilityBid);
+		secondBestBid = maxUtilityBid; // If all the bids have the same utility
+		
+		for (double u = maxUtility; u >= 0; u -= 0.01) {
+			int[] bid = sortedOutcomeSpace.getBidNearUtility(u);
 			
-			if (utilitySpace.getUtility(secondBestBid) != utilitySpace.getUtility(utilitySpace.getMaxUtilityBid()))
+			if (getUtility(bid) != maxUtility) {
+				secondBestBid = bid;
 				break;
+			}
+		}
+	}
+
+	private Opponent createOpponent() {
+		Opponent opponent = new Opponent();
+		opponent.opponentModel = new OpponentModel(bidEncoder, threshold);
+
+		opponentList.add(opponent);
+		return opponent;
+	}
+
+	private Opponent getOpponent(AgentID sender) {
+		Opponent opponent = opponents.get(sender);
+
+		/* A party is modeled from its first action on, so the number of parties does not need to be known */
+		if (opponent == null) {
+			opponent = createOpponent();
+			opponents.put(sender, opponent);
+			paretoFrontier.addOpponent(opponent.opponentModel);
 		}
+
+		return opponent;
 	}
 
 	@Override
@@ -101,55 +259,169 @@ public class MadAgent extends AbstractNegotiationParty {
 
 		/* If the action is an Offer, get the last received bid and use it to form Opponent Model */
 		if (action instanceof Offer) {
-			lastReceivedBid = ((Offer) action).getBid(); 
+			Bid bid = ((Offer) action).getBid();
+
+			try {
+				lastReceivedBid = bidPool.encode(bid);
+				lastReceivedOffer = bid;
+			} catch (IllegalArgumentException e) {
+				/* A bid outside the domain is neither modeled nor accepted */
+				System.err.println("An exception thrown while encoding the received bid..");
+				lastReceivedBid = null;
+				lastReceivedOffer = null;
+				return;
+			}
 			
-			opponentModels[2].offer(lastReceivedBid, numberOfRoundsPassed);
-			opponentModels[opponentTurn++ % 2].offer(lastReceivedBid, numberOfRoundsPassed);
+			/* Real values are rounded by the encoding, so their utility is computed from the received bid */
+			lastReceivedUtility = bidEncoder.isExact() ? utilityEvaluator.getUtility(lastReceivedBid) : utilitySpace.getUtility(bid);
+			
+			/* The aggregate model is updated directly, so its cost per offer does not depend on the number of parties */
+			offer(aggregateOpponent);
+
+			if (sender != null)
+				offer(getOpponent(sender));
+
+			/* The offers of the opponents are candidates that they like, the frontier keeps the ones that are good for us too.
+			   The agent concedes at most 10% of the threshold, so the offers far below it are not worth keeping */
+			if (receivedBids.add(lastReceivedBid) && lastReceivedUtility >= currentThreshold * 0.9)
+				paretoFrontier.add(lastReceivedBid);
+		}
+	}
+
+	private void offer(Opponent opponent) {
+		if (!CandidatePipeline.ENABLED) {
+			opponent.opponentModel.offer(lastReceivedBid, lastReceivedUtility, numberOfRoundsPassed);
+			return;
+		}
+
+		synchronized (opponent) {
+			opponent.opponentModel.offer(lastReceivedBid, lastReceivedUtility, numberOfRoundsPassed);
+		}
+
+		/* The preferred bids are only needed once the agent gets almost mad, and a preparation that is submitted
+		   but not started yet will already see this offer. Only the table of an additive space is safe to read from
+		   another thread, a non-additive space and the cache of the evaluator stay on the thread of the agent */
+		if (utilityEvaluator.isAdditive() && getCurrentStatus() > timeToGetAlmostMad && opponent.preparing.compareAndSet(false, true))
+			CandidatePipeline.submit(new Runnable() {
+				@Override
+				public void run() {
+					opponent.preparing.set(false);
+					prepareBidsPreferredByOpponent(opponent);
+				}
+			});
+	}
+
+	/* Runs in the background, the bids are ranked outside the lock so the model can be updated meanwhile */
+	private void prepareBidsPreferredByOpponent(Opponent opponent) {
+		PreparedBids preparedBids = new PreparedBids();
+		List<int[]> acceptableBids = null;
+
+		try {
+			synchronized (opponent) {
+				if (opponent.preparedBids != null && opponent.preparedBids.modelVersion == opponent.opponentModel.getVersion())
+					return;
+
+				preparedBids.modelVersion = opponent.opponentModel.getVersion();
+				acceptableBids = opponent.opponentModel.getAcceptableBids();
+			}
+
+			if (acceptableBids.size() == 0)
+				acceptableBids.add(maxUtilityBid);
+
+			preparedBids.bidsPreferredByOpponent = new BidSelector(acceptableBids, utilityEvaluator);
+			opponent.preparedBids = preparedBids;
+		} catch (Exception e) {
+			System.err.println("An exception thrown while preparing the preferred bids..");
 		}
 	}
 
 	@Override
 	public Action chooseAction(List<Class<? extends Action>> validActions) { // ... Your agent's turn ...
+		computeBudget.startTurn();
+
+		try {
+			return chooseActionWithinBudget();
+		} finally {
+			computeBudget.endTurn();
+		}
+	}
+
+	private Action chooseActionWithinBudget() {
 		numberOfRoundsPassed++;
 
 		if (lastReceivedBid == null) { // You are the starter party, offer the best possible bid
-			return new Offer(getPartyId(), getBestBidPossible());
+			if (AgentMetrics.ENABLED)
+				AgentMetrics.countOffer();
+			
+			return makeOffer();
 		} else { // You are not the starter party
 			/* Determine the best received bid */
-			if (utilitySpace.getUtility(lastReceivedBid) > utilitySpace.getUtility(bestReceivedBid))
+			if (lastReceivedUtility > bestReceivedUtility) {
 				bestReceivedBid = lastReceivedBid;
+				bestReceivedUtility = lastReceivedUtility;
+			}
 
 			/* If utility of the last received bid is higher than the threshold, accept the offer. */
 			/* Else, offer a new bid. */
-			if (utilitySpace.getUtility(lastReceivedBid) > currentThreshold)
-				return new Accept(getPartyId(), lastReceivedBid);
+			boolean accept = lastReceivedUtility > currentThreshold;
+			
+			if (AgentMetrics.ENABLED) {
+				if (accept)
+					AgentMetrics.countAccept();
+				else
+					AgentMetrics.countOffer();
+			}
+			
+			if (accept)
+				return new Accept(getPartyId(), lastReceivedOffer);
 			else
-				return new Offer(getPartyId(), getBestBidPossible());
+				return makeOffer();
 		}
 	}
 
-	private Bid getBestBidPossible() {
+	/* The bid is decoded only here, and a bid that was offered or received before is not decoded again */
+	private Offer makeOffer() {
+		int[] bid = bidPool.intern(getBestBidPossible());
+		
+		if (offeredBids.add(bid) && AgentMetrics.ENABLED)
+			AgentMetrics.countDistinctOffer();
+		
+		return new Offer(getPartyId(), bidPool.decode(bid));
+	}
+
+	private int[] getBestBidPossible() {
+		long startTime = AgentMetrics.ENABLED ? System.nanoTime() : 0;
+		int decisionPath = AgentMetrics.SECOND_BEST_BID;
+		
 		try {
 			double currentStatus = getCurrentStatus();
 			
 			if (currentStatus <= negotiationLimit * 0.05) { // First 5% of the negotiation
 				return secondBestBid;
-			} else if ((int) numberOfRoundsPassed % ROUND_NUMBER_TO_FAKE <= 10 && currentStatus <= negotiationLimit * 0.9) {
+			} else if ((int) numberOfRoundsPassed % roundNumberToFake <= 10 && currentStatus <= negotiationLimit * 0.9) {
+				decisionPath = AgentMetrics.FAKE_BID;
 				return getFakeBid();
 			} else {
-				myTurn = RANDOM.nextInt(3); // Generate random value among {0, 1, 2}
+				decisionPath = AgentMetrics.NICE_BID;
+				myTurn = opponentList.get(random.nextInt(opponentList.size())); // Choose one of the opponents or the aggregate
 				calculateCurrentThreshold(currentStatus);
 				
-				if (currentStatus > negotiationLimit * 0.99 && utilitySpace.getUtility(bestReceivedBid) >= currentThreshold)
+				if (currentStatus > negotiationLimit * 0.99 && bestReceivedBid != null && bestReceivedUtility >= currentThreshold) {
+					decisionPath = AgentMetrics.BEST_RECEIVED_BID;
 					return bestReceivedBid;
-				else
+				} else {
 					return getNiceBid(currentStatus);
+				}
 			}
 		} catch (Exception e) {
 			System.err.println("An exception thrown while generating bid..");
+		} finally {
+			/* Recorded for the path that was taken, also when it threw */
+			if (AgentMetrics.ENABLED)
+				AgentMetrics.recordLatency(decisionPath, startTime);
 		}
 		
-		return generateRandomBid(); // This line will never be executed!!
+		return bidSampler.getRandomBid(random); // This line will never be executed!!
 	}
 
 	/* Current status is the time/number of rounds passed */
@@ -163,21 +435,19 @@ public class MadAgent extends AbstractNegotiationParty {
 	}
 
 	/* At first 90% of negotiation, agent generates a random bid to fake his opponent with certain frequency */
-	private Bid getFakeBid() {
-		for (int trial = 1; trial <= MAXIMUM_NUMBER_OF_TRIALS; trial++) {
-			Bid bid = generateRandomBid();
-			
-			/* The utility of the bid should be greater than 80% of the threshold */
-			if (utilitySpace.getUtility(bid) >= threshold * 0.8)
-				return bid;
-		}
+	private int[] getFakeBid() {
+		/* The utility of the bid should be greater than 80% of the threshold */
+		int[] bid = sampleNewBid(threshold * 0.8);
+		
+		if (bid != null)
+			paretoFrontier.add(bid);
 		
-		return generateRandomBid();
+		return (bid != null) ? bid : bidSampler.getRandomBid(random);
 	}
 	
 	private void calculateCurrentThreshold(double currentStatus) {
 		/* Threshold value is updated according to the agent's boulware level */
-		threshold = opponentModels[myTurn].getNewThreshold();
+		threshold = myTurn.opponentModel.getNewThreshold();
 		
 		if (numberOfRoundsPassed % 10 == 0) {
 			currentThreshold = threshold;
@@ -190,56 +460,154 @@ public class MadAgent extends AbstractNegotiationParty {
 	}
 
 	/* Get a nice bid using Opponent Model */
-	private Bid getNiceBid(double currentStatus) throws Exception {
-		Bid bid = generateRandomBid();
-		
+	private int[] getNiceBid(double currentStatus) throws Exception {
 		/* Shift Bids is for shifting the index if the bid at the current index is not accepted by opponent */
 		if (currentStatus > timeToGetAlmostMad) {
 			getBidsPreferredByOpponent();
-			bid = (bidsPreferredByOpponents.get(myTurn) != null) ? 
-					bidsPreferredByOpponents.get(myTurn).get(shiftBids[myTurn]++ % bidsPreferredByOpponents.get(myTurn).size()) : 
-						utilitySpace.getMaxUtilityBid();
+			BidSelector selector = myTurn.bidsPreferredByOpponent;
+			int rank = myTurn.shiftBids++ % selector.size();
 		
-			if (utilitySpace.getUtility(bid) >= currentThreshold)
+			if (selector.getUtility(rank) >= currentThreshold) {
+				/* A bid offered before is skipped for one of the next ranks, if it is new and still above the threshold */
+				for (int k = 0; k < MAXIMUM_NUMBER_OF_SKIPPED_RANKS && offeredBids.contains(selector.get(rank)); k++) {
+					if (rank + 1 >= selector.size() || selector.getUtility(rank + 1) < currentThreshold)
+						break;
+					
+					rank++;
+					myTurn.shiftBids++;
+					
+					if (AgentMetrics.ENABLED)
+						AgentMetrics.countSkippedRepeat();
+				}
+				
+				return selector.get(rank);
+			} else {
+				myTurn.shiftBids = 0;
+			}
+			
+			/* The bid which is best for the least satisfied opponent, among the candidates above the threshold */
+			int[] bid = paretoFrontier.getMaximinBid(currentThreshold, offeredBids);
+			
+			if (bid != null) {
+				lastNiceBid = bid;
 				return bid;
-			else
-				shiftBids[myTurn] = 0;
+			}
 		}
 		
-		for (int trial = 1; trial <= MAXIMUM_NUMBER_OF_TRIALS; trial++) {
-			bid = generateRandomBid();
+		int[] bid = sampleNewBid(currentThreshold);
 
-			if (utilitySpace.getUtility(bid) >= currentThreshold)
-				return bid;
+		if (bid != null) {
+			/* The bids sampled before the agent gets almost mad fill the frontier for the end of the negotiation */
+			paretoFrontier.add(bid);
+			lastNiceBid = bid;
+			return bid;
 		}
 
-		/* If it cannot generate a random bid higher than current threshold in the maximum number of trials, it returns max utility bid */
-		return utilitySpace.getMaxUtilityBid();
+		/* If the search ran out of budget, the last nice bid is offered again as long as it is still above the threshold */
+		if (lastNiceBid != null && getUtility(lastNiceBid) >= currentThreshold)
+			return lastNiceBid;
+
+		/* If there is no bid higher than current threshold (or it cannot be found in the maximum number of trials), it returns max utility bid */
+		if (AgentMetrics.ENABLED)
+			AgentMetrics.countMaxUtilityBidFallback();
+		
+		return maxUtilityBid;
+	}
+	
+	/* Samples a bid with utility >= minimumUtility that was not offered before, or a repeated one if only repeats are found */
+	private int[] sampleNewBid(double minimumUtility) {
+		int[] bid = bidSampler.sample(minimumUtility, random, computeBudget);
+		
+		for (int i = 1; i < MAXIMUM_NUMBER_OF_RESAMPLES && bid != null && offeredBids.contains(bid); i++) {
+			int[] newBid = bidSampler.sample(minimumUtility, random, computeBudget);
+			
+			if (newBid == null)
+				break;
+			
+			bid = newBid;
+			
+			if (AgentMetrics.ENABLED)
+				AgentMetrics.countSkippedRepeat();
+		}
+		
+		/* Near the top of an additive space the few bids above the utility are soon all offered, and the random draws
+		   keep repeating them, so the best bid above the utility that was not offered yet is walked to instead */
+		if (bid != null && lazySortedOutcomeSpace != null && offeredBids.contains(bid)) {
+			int[] newBid = getFirstNewBid(minimumUtility);
+			
+			if (newBid != null)
+				bid = newBid;
+		}
+		
+		return bid;
+	}
+	
+	/* The offered bids are never forgotten, so the ranks before firstNewRank never need to be walked again */
+	private int[] getFirstNewBid(double minimumUtility) {
+		for (; lazySortedOutcomeSpace.getUtility(firstNewRank) >= minimumUtility; firstNewRank++) {
+			int[] bid = lazySortedOutcomeSpace.getBid(firstNewRank);
+			
+			if (!offeredBids.contains(bid))
+				return bid;
+		}
+		
+		return null;
 	}
 	
 	private void getBidsPreferredByOpponent() throws Exception {
-		opponentModels[myTurn].computeMostPreferredBid();
+		/* The selector (and the bids it has already ranked) is reused as long as the opponent model has not changed */
+		if (myTurn.modelVersion == myTurn.opponentModel.getVersion()) {
+			if (AgentMetrics.ENABLED)
+				AgentMetrics.countPreferredBidsCacheHit();
+			
+			return;
+		}
+		
+		/* In the pipelined mode the bids may be ready, otherwise they are computed synchronously as below */
+		PreparedBids preparedBids = CandidatePipeline.ENABLED ? myTurn.preparedBids : null;
+		
+		if (preparedBids != null && preparedBids.modelVersion == myTurn.opponentModel.getVersion()) {
+			if (AgentMetrics.ENABLED)
+				AgentMetrics.countPreferredBidsPipelineHit();
+			
+			myTurn.modelVersion = preparedBids.modelVersion;
+			myTurn.bidsPreferredByOpponent = preparedBids.bidsPreferredByOpponent;
+			paretoFrontier.add(myTurn.bidsPreferredByOpponent.get(0));
+			return;
+		}
+		
+		/* If the budget of the turn is spent, the stale selector is used, it is rebuilt in a later turn */
+		if (myTurn.bidsPreferredByOpponent != null && computeBudget.isExhausted()) {
+			if (AgentMetrics.ENABLED)
+				AgentMetrics.countPreferredBidsCacheHit();
+			
+			return;
+		}
+		
+		if (AgentMetrics.ENABLED)
+			AgentMetrics.countPreferredBidsCacheMiss();
 		
-		bidsPreferredByOpponents.set(myTurn, null);	
-		bidsPreferredByOpponents.set(myTurn, opponentModels[myTurn].getAcceptableBids());
+		List<int[]> acceptableBids = null;
 		
-		sortBids(bidsPreferredByOpponents.get(myTurn));
+		/* Only this thread updates the model, so the lock is needed only against a preparation reading it */
+		synchronized (myTurn) {
+			myTurn.modelVersion = myTurn.opponentModel.getVersion();
+			acceptableBids = myTurn.opponentModel.getAcceptableBids();
+		}
 
 		/* If there is no element in the list, just add one */
-		if (bidsPreferredByOpponents.get(myTurn).size() == 0)
-			bidsPreferredByOpponents.get(myTurn).add(utilitySpace.getMaxUtilityBid());
+		if (acceptableBids.size() == 0)
+			acceptableBids.add(maxUtilityBid);
+		
+		/* Only the bids that are actually offered get ranked, instead of sorting the whole list */
+		myTurn.bidsPreferredByOpponent = new BidSelector(acceptableBids, utilityEvaluator);
+		
+		/* The best acceptable bid for us is a candidate for the frontier */
+		paretoFrontier.add(myTurn.bidsPreferredByOpponent.get(0));
 	}
 
-	private void sortBids(List<Bid> bids) {
-		bids.sort(new Comparator<Bid>() {
-			@Override
-			public int compare(Bid a, Bid b) {
-				if (utilitySpace.getUtility(a) < utilitySpace.getUtility(b)) return 1;
-				if (utilitySpace.getUtility(a) > utilitySpace.getUtility(b)) return -1;
-
-				return 0;
-			}
-		});
+	private double getUtility(int[] bid) {
+		return utilityEvaluator.getUtility(bid);
 	}
 
 	@Override
@@ -249,7 +617,15 @@ public class MadAgent extends AbstractNegotiationParty {
 
 	@Override
 	public HashMap<String, String> negotiationEnded(Bid acceptedBid) {
-		System.out.println("Negotiation has ended..");
-		return null;
+		/* The outcome of the session is stored in the persistent data by the framework, these are only for the logs */
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		parameters.put("discountFactor", String.valueOf(utilitySpace.getDiscountFactor()));
+		parameters.put("reservationValue", String.valueOf(utilitySpace.getReservationValueUndiscounted()));
+		parameters.put("threshold", String.valueOf(threshold));
+		parameters.put("timeToGetMad", String.valueOf(timeToGetMad));
+		parameters.put("timeToGetAlmostMad", String.valueOf(timeToGetAlmostMad));
+		parameters.put("roundNumberToFake", String.valueOf(roundNumberToFake));
+		
+		return parameters;
 	}
 }
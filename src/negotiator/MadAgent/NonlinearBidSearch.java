@@ -0,0 +1,228 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- NON-LINEAR BID SEARCH --------------------------------
+ * Finds bids above a threshold in utility spaces that are not additive, such as the constraint-based non-linear spaces
+ * (the utility of a bid is the sum of the utilities of the hyper-rectangles it falls into), whose outcome spaces are
+ * far too large to be enumerated and sorted.
+ * 	- The utility space is used as a black box. A move changes the value of one issue, which is what moves a bid into
+ * 	  or out of the constraints over that issue. Simulated annealing also accepts a worse move with probability
+ * 	  exp(delta / T), so the search can leave the constraints a bid satisfies for a better combination of constraints,
+ * 	  and it walks freely over the plateaus where no constraint changes.
+ * 	- Every evaluation goes through the cache of the utility evaluator, since the moves revisit the same bids often.
+ * 	- The best bids found so far are kept as elites. A query starts from a random elite above the threshold and takes
+ * 	  a short random walk that stays above it, so the bids vary between the turns without searching from scratch.
+ * 	  Only if no elite is above the threshold, a new annealing run looks for one within the compute budget.
+ * 	  Once a run takes all its steps without reaching the threshold, the runs for a threshold at least as high are
+ * 	  shortened: the threshold is likely above every bid, as it is when the threshold of the agent exceeds the maximum
+ * 	  utility, and a full run would fail every turn. A run stopped by the budget proves nothing and is not recorded,
+ * 	  and the record is cleared as soon as a bid at least as high is found.
+ * */
+public class NonlinearBidSearch {
+
+	private static final int NUMBER_OF_ELITES = 64;
+	private static final int MAXIMUM_NUMBER_OF_STEPS = 2000; // Per query, as many evaluations as the 2000 random draws of the original getNiceBid
+	private static final int NUMBER_OF_STEPS_ABOVE_FAILURE = 100; // Per query, above a threshold that was not reached
+	private static final int NUMBER_OF_RESTARTS = 8; // Annealing runs for the best bid, at the start of the session
+	private static final int STEPS_PER_RESTART = 2000;
+	private static final double INITIAL_TEMPERATURE = 0.1;
+	private static final double FINAL_TEMPERATURE = 0.001;
+	private static final int BUDGET_CHECK_INTERVAL = 32;
+
+	private UtilityEvaluator utilityEvaluator = null;
+	private BidEncoder bidEncoder = null;
+	private int numberOfIssues = 0;
+	private int[][] elites = new int[NUMBER_OF_ELITES][]; // In descending order of utility
+	private double[] eliteUtilities = new double[NUMBER_OF_ELITES];
+	private int numberOfElites = 0;
+	private double failedThreshold = Double.POSITIVE_INFINITY; // Lowest threshold that a full run did not reach
+	private boolean stoppedByBudget = false; // Whether the last annealing run was stopped by the budget
+
+	public NonlinearBidSearch(UtilityEvaluator utilityEvaluator) {
+		this.utilityEvaluator = utilityEvaluator;
+		this.bidEncoder = utilityEvaluator.getBidEncoder();
+
+		numberOfIssues = bidEncoder.getNumberOfIssues();
+	}
+
+	private double getUtility(int[] bid) {
+		return utilityEvaluator.getUtility(bid);
+	}
+
+	/* -------------------------------- ELITES -------------------------------- */
+	private void addElite(int[] bid, double utility) {
+		if (numberOfElites == NUMBER_OF_ELITES && utility <= eliteUtilities[NUMBER_OF_ELITES - 1])
+			return;
+
+		for (int e = 0; e < numberOfElites && eliteUtilities[e] >= utility; e++)
+			if (eliteUtilities[e] == utility && Arrays.equals(elites[e], bid))
+				return;
+
+		int e = Math.min(numberOfElites, NUMBER_OF_ELITES - 1);
+
+		for (; e > 0 && eliteUtilities[e - 1] < utility; e--) {
+			elites[e] = elites[e - 1];
+			eliteUtilities[e] = eliteUtilities[e - 1];
+		}
+
+		elites[e] = bid.clone();
+		eliteUtilities[e] = utility;
+		numberOfElites = Math.min(numberOfElites + 1, NUMBER_OF_ELITES);
+	}
+
+	private int getNumberOfElitesAbove(double threshold) {
+		int e = 0;
+
+		while (e < numberOfElites && eliteUtilities[e] >= threshold)
+			e++;
+
+		return e;
+	}
+
+	/* -------------------------------- SEARCH -------------------------------- */
+	/* Annealing from the start bid until a bid reaches the target or the steps run out, returns the best bid visited.
+	   The temperature decreases geometrically from INITIAL_TEMPERATURE to FINAL_TEMPERATURE over the steps */
+	private int[] anneal(int[] start, double target, int numberOfSteps, SplittableRandom random, ComputeBudget budget) {
+		int[] current = start.clone();
+		double utility = getUtility(current);
+		int[] best = current.clone();
+		double bestUtility = utility;
+
+		addElite(current, utility);
+		stoppedByBudget = false;
+
+		for (int step = 0; step < numberOfSteps && bestUtility < target; step++) {
+			/* The clock is read only every few steps, a step is much cheaper than System.nanoTime */
+			if (budget != null && step % BUDGET_CHECK_INTERVAL == BUDGET_CHECK_INTERVAL - 1 && budget.isExhausted()) {
+				stoppedByBudget = true;
+				break;
+			}
+
+			int issue = random.nextInt(numberOfIssues);
+			int numberOfValues = bidEncoder.getNumberOfValues(issue);
+
+			if (numberOfValues < 2)
+				continue;
+
+			int oldValue = current[issue];
+			int newValue = random.nextInt(numberOfValues - 1);
+
+			current[issue] = (newValue >= oldValue) ? newValue + 1 : newValue;
+
+			double newUtility = getUtility(current);
+			double temperature = INITIAL_TEMPERATURE * Math.pow(FINAL_TEMPERATURE / INITIAL_TEMPERATURE, (double) step / numberOfSteps);
+
+			if (newUtility >= utility || random.nextDouble() < Math.exp((newUtility - utility) / temperature)) {
+				utility = newUtility;
+
+				if (utility > bestUtility) {
+					best = current.clone();
+					bestUtility = utility;
+					addElite(best, bestUtility);
+				}
+			} else {
+				current[issue] = oldValue;
+			}
+		}
+
+		return best;
+	}
+
+	/* Changes one issue at a time to its best value, until no single change improves the bid */
+	private int[] climb(int[] start) {
+		int[] bid = start.clone();
+		double utility = getUtility(bid);
+		boolean improved = true;
+
+		while (improved) {
+			improved = false;
+
+			for (int i = 0; i < numberOfIssues; i++) {
+				int bestValue = bid[i];
+
+				for (int v = 0; v < bidEncoder.getNumberOfValues(i); v++) {
+					bid[i] = v;
+					double newUtility = getUtility(bid);
+
+					if (newUtility > utility) {
+						bestValue = v;
+						utility = newUtility;
+						improved = true;
+					}
+				}
+
+				bid[i] = bestValue;
+			}
+		}
+
+		addElite(bid, utility);
+		return bid;
+	}
+
+	/* The best bid found by a few annealing runs from random bids, each refined by hill climbing */
+	public int[] getMaxBid(SplittableRandom random) {
+		for (int restart = 0; restart < NUMBER_OF_RESTARTS; restart++)
+			climb(anneal(getRandomBid(random), Double.POSITIVE_INFINITY, STEPS_PER_RESTART, random, null));
+
+		return elites[0];
+	}
+
+	/* The best bid found with a lower utility than the best bid found, or the best bid if they all have its utility */
+	public int[] getSecondBestBid() {
+		for (int e = 1; e < numberOfElites; e++)
+			if (eliteUtilities[e] < eliteUtilities[0])
+				return elites[e];
+
+		return elites[0];
+	}
+
+	/* Returns a bid with utility >= threshold, or null if none could be found within the steps and the budget */
+	public int[] search(double threshold, SplittableRandom random, ComputeBudget budget) {
+		int numberOfCandidates = getNumberOfElitesAbove(threshold);
+
+		if (numberOfCandidates == 0) {
+			boolean aboveFailure = threshold >= failedThreshold;
+			int[] bid = anneal(getRandomBid(random), threshold, aboveFailure ? NUMBER_OF_STEPS_ABOVE_FAILURE : MAXIMUM_NUMBER_OF_STEPS, random, budget);
+
+			if (getUtility(bid) >= threshold) {
+				if (aboveFailure)
+					failedThreshold = Double.POSITIVE_INFINITY;
+
+				return bid;
+			}
+
+			if (!aboveFailure && !stoppedByBudget)
+				failedThreshold = threshold;
+
+			return null;
+		}
+
+		if (threshold >= failedThreshold)
+			failedThreshold = Double.POSITIVE_INFINITY;
+
+		int[] bid = elites[random.nextInt(numberOfCandidates)].clone();
+
+		/* A move is kept only if the bid stays above the threshold */
+		for (int step = 0; step < numberOfIssues; step++) {
+			int issue = random.nextInt(numberOfIssues);
+			int oldValue = bid[issue];
+
+			bid[issue] = random.nextInt(bidEncoder.getNumberOfValues(issue));
+
+			if (getUtility(bid) < threshold)
+				bid[issue] = oldValue;
+		}
+
+		return bid;
+	}
+
+	private int[] getRandomBid(SplittableRandom random) {
+		int[] bid = new int[numberOfIssues];
+
+		for (int i = 0; i < numberOfIssues; i++)
+			bid[i] = random.nextInt(bidEncoder.getNumberOfValues(i));
+
+		return bid;
+	}
+}
@@ -1,45 +1,59 @@
 package negotiator.MadAgent;
 
 import java.util.*;
-import negotiator.*;
-import negotiator.issue.*;
-import negotiator.utility.UtilitySpace;
+import negotiator.issue.ISSUETYPE;
 
 public class OpponentModel {
 
 	private static final int MAXIMUM_BOULWARE_LEVEL = 5;
 	private static final int BOULWARE_MULTIPLIER = 10;
 
-	private class Preference {
-		private Issue issue;
-		private Value value;
-		private int count;
-	}
-
-	private class Weight {
-		private Issue issue;
-		private double value;
-	}
-
-	private UtilitySpace utilitySpace = null;
-	private Bid lastLastReceivedBid = null;
-	private Bid mostPreferredBid = null;
+	private BidEncoder bidEncoder = null;
+	private double lastLastReceivedUtility = -1;
+	private int[] mostPreferredBid = null; // Most preferred value of each issue, maintained as the offers arrive
+	private int[] maximumCounts = null; // Number of occurrences of the most preferred value of each issue
+	private int sumOfMaximumCounts = 0; // Used for normalizing the issue weights
+	private int[] issueOrder = null; // Issues sorted by their weights in ascending order
+	private int[] issuePositions = null; // Position of each issue in the issue order
+	private int numberOfSelectedIssues = 0; // Number of issues (with the lowest weights) used for the acceptable bids
+	private long version = 0; // Incremented whenever the acceptable bids change
+	private int numberOfOffers = 0; // Estimated utilities change with every offer, not only with the version
 	private double threshold = 0;
 	private int boulwareLevel = 0;
 	private int numberOfIssues = 0;
-	private List<Preference> preferences = null;
+	private int[][] counts = null; // counts[issue][value] -> Number of occurrences of the value, for discrete issues
+	private IntCountMap[] sparseCounts = null; // Number of occurrences of each value, for integer and real issues
 
-	public OpponentModel(UtilitySpace utilitySpace, double threshold) {
-		this.utilitySpace = utilitySpace;
+	public OpponentModel(BidEncoder bidEncoder, double threshold) {
+		this.bidEncoder = bidEncoder;
 		this.threshold = threshold;
 
-		numberOfIssues = utilitySpace.getDomain().getIssues().size();	
-		preferences = new ArrayList<Preference>();
+		numberOfIssues = bidEncoder.getNumberOfIssues();
+		counts = new int[numberOfIssues][];
+		sparseCounts = new IntCountMap[numberOfIssues];
+		mostPreferredBid = new int[numberOfIssues];
+		maximumCounts = new int[numberOfIssues];
+		issueOrder = new int[numberOfIssues];
+		issuePositions = new int[numberOfIssues];
+
+		for (int issue = 0; issue < numberOfIssues; issue++) {
+			if (bidEncoder.getIssue(issue).getType() == ISSUETYPE.DISCRETE)
+				counts[issue] = new int[bidEncoder.getNumberOfValues(issue)];
+			else
+				sparseCounts[issue] = new IntCountMap();
+
+			issueOrder[issue] = issue;
+			issuePositions[issue] = issue;
+		}
+
+		numberOfSelectedIssues = selectIssues();
 	}
 
-	public void offer(Bid lastReceivedBid, double numberOfRounds) {
-		decideBoulwareLevel(lastReceivedBid);
+	/* The received bid is encoded and its utility (for our agent) is computed once by the caller */
+	public void offer(int[] lastReceivedBid, double lastReceivedUtility, double numberOfRounds) {
+		decideBoulwareLevel(lastReceivedUtility);
 		addPreference(lastReceivedBid);
+		numberOfOffers++;
 	}
 
 	/* -------------------------- The Concept of Boulware Level --------------------------
@@ -51,14 +65,12 @@ public class OpponentModel {
 	 * 	- Boulware level is calculated by checking the previous offers.
 	 * 	- Last last received bid is the bid received just before the last received bid.
 	 * */
-	public void decideBoulwareLevel(Bid lastReceivedBid) {
+	public void decideBoulwareLevel(double lastReceivedUtility) {
 		final double EDGE_OF_CONCEDING = threshold * 0.8;
 
-		if (lastLastReceivedBid == null)
-			lastLastReceivedBid = lastReceivedBid;
+		if (lastLastReceivedUtility < 0)
+			lastLastReceivedUtility = lastReceivedUtility;
 
-		double lastLastReceivedUtility = utilitySpace.getUtility(lastLastReceivedBid);
-		double lastReceivedUtility = utilitySpace.getUtility(lastReceivedBid);
 		double finalReceivedUtility = (lastLastReceivedUtility + lastReceivedUtility) / 2;
 
 		/* If final received utility (the average of the last 2 utilities) is greater than the edge of conceding,
@@ -72,155 +84,151 @@ public class OpponentModel {
 		if (boulwareLevel > MAXIMUM_BOULWARE_LEVEL)
 			boulwareLevel = MAXIMUM_BOULWARE_LEVEL;
 
-		lastLastReceivedBid = lastReceivedBid;
+		lastLastReceivedUtility = lastReceivedUtility;
 	}
 
-	private void addPreference(Bid lastReceivedBid) {
+	/* -------------------------- Version of the Model --------------------------
+	 * 	- Acceptable bids are the most preferred bid with a single value changed in one of the selected issues.
+	 * 	- They only change if a most preferred value changes, a new value is seen, or the order of the issue weights
+	 * 	  (or the number of issues selected by it) changes. The version is incremented only in these cases,
+	 * 	  so the acceptable bids can be cached against it.
+	 * */
+	private void addPreference(int[] lastReceivedBid) {
 		/* Whenever a new offer is given, this method will be called
-		   For each item, number of occurrences will be stored in preferences list. */
-		for (int issueNr = 1; issueNr <= numberOfIssues; issueNr++) {
-			Preference preference = new Preference();
+		   For each item, number of occurrences will be stored in the count table of its issue.
+		   Since a count only grows by one, the value becomes the most preferred one as soon as its count exceeds the maximum. */
+		for (int issue = 0; issue < numberOfIssues; issue++) {
+			int value = lastReceivedBid[issue];
+			int count = (counts[issue] != null) ? ++counts[issue][value] : sparseCounts[issue].increment(value);
 
-			preference.issue = lastReceivedBid.getIssues().get(issueNr - 1);
-			preference.value = lastReceivedBid.getValue(issueNr);
-			preference.count = 1;
+			if (count == 1 && value != mostPreferredBid[issue]) // A new value is seen
+				version++;
 
-			int index = getIndexIfPreferredBefore(preference.value);
+			if (count > maximumCounts[issue]) {
+				if (value != mostPreferredBid[issue])
+					version++;
 
-			if (index == -1)
-				preferences.add(preference);
-			else
-				preferences.get(index).count++;
+				mostPreferredBid[issue] = value;
+				maximumCounts[issue] = count;
+				sumOfMaximumCounts++;
+
+				if (moveIssue(issue))
+					version++;
+			}
 		}
-	}
 
-	private int getIndexIfPreferredBefore(Value value) {
-		for (int i = 0; i < preferences.size(); i++)
-			if (preferences.get(i).value == value)
-				return i;
+		int selectedIssues = selectIssues();
 
-		return -1;
+		if (selectedIssues != numberOfSelectedIssues) {
+			numberOfSelectedIssues = selectedIssues;
+			version++;
+		}
 	}
 
-	public List<Bid> getAcceptableBids() {
-		/* Return list of bids that will possibly be accepted by the opponent. */
-		computeMostPreferredBid();
+	private boolean moveIssue(int issue) {
+		/* The weight of the issue increased, so it is moved towards the end of the order (insertion sort step) */
+		boolean moved = false;
 
-		List<Bid> acceptableBids = new ArrayList<Bid>();
-		Weight[] weights = getWeights();
+		for (int position = issuePositions[issue]; position + 1 < numberOfIssues; position++) {
+			int nextIssue = issueOrder[position + 1];
 
-		for (double i = 1, previousWeight = 0; i < weights.length; i++) {
-			if (i > 2 && weights[(int) i].value - previousWeight > 0.02)
+			if (maximumCounts[nextIssue] > maximumCounts[issue] || (maximumCounts[nextIssue] == maximumCounts[issue] && nextIssue > issue))
 				break;
 
-			Issue currentIssue = weights[(int) i].issue;
-			addBidsWithDifferentValues(acceptableBids, currentIssue);
-
-			previousWeight = weights[(int) i].value;
+			issueOrder[position] = nextIssue;
+			issueOrder[position + 1] = issue;
+			issuePositions[nextIssue] = position;
+			issuePositions[issue] = position + 1;
+			moved = true;
 		}
 
-		return acceptableBids;
+		return moved;
 	}
 
-	public void computeMostPreferredBid() {
-		HashMap<Integer, Value> values = new HashMap<Integer, Value>();
-		sortPreferences();
+	private int selectIssues() {
+		/* The two issues with the lowest weights are always selected, the next ones are selected while
+		   the difference between the consecutive weights is not greater than 0.02 */
+		int selectedIssues = Math.min(2, numberOfIssues);
 
-		for (int i = 0, j = 0; i < preferences.size() && j < numberOfIssues; i++) {
-			Issue currentIssue = preferences.get(i).issue;
-			Value currentValue = preferences.get(i).value;
+		while (selectedIssues < numberOfIssues
+				&& getWeight(issueOrder[selectedIssues]) - getWeight(issueOrder[selectedIssues - 1]) <= 0.02)
+			selectedIssues++;
 
-			if (!values.containsKey(currentIssue.getNumber())) {
-				values.put(currentIssue.getNumber(), currentValue);
-				j++;
-			}
-		}
-
-		mostPreferredBid = new Bid(utilitySpace.getDomain(), values);
+		return selectedIssues;
 	}
 
-	private void sortPreferences() {
-		preferences.sort(new Comparator<Preference>() {
-			@Override
-			public int compare(Preference a, Preference b) {
-				return b.count - a.count;
-			}
-		});
+	public int getCount(int issue, int value) {
+		return (counts[issue] != null) ? counts[issue][value] : sparseCounts[issue].get(value);
 	}
 
-	private Weight[] getWeights() {
-		/* Estimates the weight of each issue. */
-		Weight[] weights = new Weight[numberOfIssues + 1];
+	public List<int[]> getAcceptableBids() {
+		/* Return list of bids that will possibly be accepted by the opponent. */
+		List<int[]> acceptableBids = new ArrayList<int[]>();
 
-		calculateWeights(weights);
-		sortWeights(weights);
+		for (int i = 0; i < numberOfSelectedIssues; i++)
+			addBidsWithDifferentValues(acceptableBids, issueOrder[i]);
 
-		return weights;
+		return acceptableBids;
 	}
 
-	private void calculateWeights(Weight[] weights) {
-		double sum = 0;
-
-		for (int i = 0, j = 0; i < preferences.size() && j < numberOfIssues; i++) {
-			Issue currentIssue = preferences.get(i).issue;
-			int issueId = currentIssue.getNumber();
-
-			if (weights[issueId] == null) {
-				weights[issueId] = new Weight();
-
-				weights[issueId].issue = currentIssue;
-				weights[issueId].value = preferences.get(i).count;
+	/* The weight of an issue is the number of occurrences of its most preferred value, normalized */
+	public double getWeight(int issue) {
+		return (sumOfMaximumCounts > 0) ? (double) maximumCounts[issue] / sumOfMaximumCounts : 0;
+	}
 
-				sum += weights[issueId].value;
-				j++;
-			}
+	private void addBidsWithDifferentValues(List<int[]> acceptableBids, int currentIssue) {
+		/* Modifies the most proffered bid by opponent to increase utility for our agent. */
+		if (counts[currentIssue] != null) {
+			for (int value = 0; value < counts[currentIssue].length; value++)
+				if (counts[currentIssue][value] > 0)
+					addBidWithDifferentValue(acceptableBids, currentIssue, value);
+		} else {
+			for (int slot = 0; slot < sparseCounts[currentIssue].getCapacity(); slot++)
+				if (sparseCounts[currentIssue].getKeyAt(slot) != -1)
+					addBidWithDifferentValue(acceptableBids, currentIssue, sparseCounts[currentIssue].getKeyAt(slot));
 		}
-
-		for (int i = 1; i < weights.length; i++) // Normalizing the weights
-			weights[i].value /= sum;
 	}
 
-	private void sortWeights(Weight[] weights) {
-		weights[0] = new Weight();
+	private void addBidWithDifferentValue(List<int[]> acceptableBids, int currentIssue, int value) {
+		if (value == mostPreferredBid[currentIssue])
+			return;
 
-		Arrays.sort(weights, new Comparator<Weight>() {
-			@Override
-			public int compare(Weight a, Weight b) {
-				if (a.value > b.value) return 1;
-				if (a.value < b.value) return -1;
+		int[] bid = mostPreferredBid.clone();
+		bid[currentIssue] = value;
 
-				return 0;
-			}
-		});
+		acceptableBids.add(bid);
 	}
 
-	private void addBidsWithDifferentValues(List<Bid> acceptableBids, Issue currentIssue) {
-		/* Modifies the most proffered bid by opponent to increase utility for our agent. */
-		int issueId = currentIssue.getNumber();
+	public double getNewThreshold() {
+		/* c is the constant value which makes threshold 1 if the boulware level is maximum (5) */
+		final double c = (threshold * MAXIMUM_BOULWARE_LEVEL) / (1 - threshold);
+		return threshold * (1 + boulwareLevel / c);
+	}
 
-		List<Value> values = new ArrayList<Value>();
-		values.add(mostPreferredBid.getValue(issueId));
+	/* Estimated utility of the bid for the opponent: the weight of each issue times the count of the value relative
+	   to the most preferred value, which is the count of the value over the sum of the maximum counts */
+	public double getEstimatedUtility(int[] bid) {
+		if (sumOfMaximumCounts == 0)
+			return 0;
 
-		for (int j = 0; j < preferences.size(); j++)
-			if (preferences.get(j).issue == currentIssue)
-				if (!values.contains((preferences.get(j).value)))
-					values.add(preferences.get(j).value);
+		double utility = 0;
 
-		for (int j = 1; j < values.size(); j++) {
-			HashMap<Integer, Value> valueMap = mostPreferredBid.getValues();    
-			valueMap.put(issueId, values.get(j));	
+		for (int issue = 0; issue < numberOfIssues; issue++)
+			utility += getCount(issue, bid[issue]);
 
-			acceptableBids.add(new Bid(utilitySpace.getDomain(), valueMap));
-		}
+		return utility / sumOfMaximumCounts;
 	}
 
-	public double getNewThreshold() {
-		/* c is the constant value which makes threshold 1 if the boulware level is maximum (5) */
-		final double c = (threshold * MAXIMUM_BOULWARE_LEVEL) / (1 - threshold);
-		return threshold * (1 + boulwareLevel / c);
+	public long getVersion() {
+		return version;
+	}
+
+	public int getNumberOfOffers() {
+		return numberOfOffers;
 	}
 
-	public Bid getMostPreferredBid() {
+	/* The returned array is maintained by the model, it should not be modified */
+	public int[] getMostPreferredBid() {
 		return mostPreferredBid;
 	}
 }
@@ -0,0 +1,230 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+
+/* -------------------------------- PARETO FRONTIER --------------------------------
+ * Approximate Pareto frontier over (own utility, estimated utility of each opponent), used for finding the bid that
+ * maximizes the minimum estimate of the opponents among the bids above a threshold.
+ * 	- The frontier is taken over a bounded pool of candidates: the bids the agent samples, the bids the opponents
+ * 	  offer and the acceptable bids of the opponent models. When the pool is full, the oldest candidate that is not
+ * 	  on the frontier is replaced.
+ * 	- The own utility of a candidate is computed once. The estimate of an opponent changes with every offer to its
+ * 	  model, so each estimate remembers the number of offers of the model it was computed with. A frontier query
+ * 	  that finds that some models received an offer since recomputes the estimates of these models only, and
+ * 	  rebuilds the frontier.
+ * 	  Between two offers, new candidates are inserted incrementally: a candidate that is not dominated joins
+ * 	  the frontier and removes the candidates it dominates.
+ * 	- The bid that maximizes the minimum estimate among the bids above a threshold is always on the frontier
+ * 	  (whatever dominates it is at least as good), so a query only scans the frontier.
+ * */
+public class ParetoFrontier {
+
+	private static final int MAXIMUM_NUMBER_OF_CANDIDATES = 256;
+
+	private UtilityEvaluator utilityEvaluator = null;
+	private List<OpponentModel> opponentModels = new ArrayList<OpponentModel>();
+	private int[] numberOfOffers = new int[0]; // Number of offers of each model when the frontier was built
+	private int[][] bids = new int[MAXIMUM_NUMBER_OF_CANDIDATES][];
+	private int[] hashes = new int[MAXIMUM_NUMBER_OF_CANDIDATES]; // Compared before the bids, for finding a repeated candidate
+	private double[] utilities = new double[MAXIMUM_NUMBER_OF_CANDIDATES];
+	private double[][] estimates = new double[MAXIMUM_NUMBER_OF_CANDIDATES][]; // estimates[c][o] -> Estimate of opponent o for candidate c
+	private int[][] estimatedOffers = new int[MAXIMUM_NUMBER_OF_CANDIDATES][]; // estimatedOffers[c][o] -> Number of offers of model o for estimates[c][o], -1 if none
+	private boolean[] onFrontier = new boolean[MAXIMUM_NUMBER_OF_CANDIDATES];
+	private int[] frontier = new int[MAXIMUM_NUMBER_OF_CANDIDATES]; // Candidates on the frontier
+	private int frontierSize = 0;
+	private int numberOfCandidates = 0;
+	private int oldestCandidate = 0; // Where the search for a candidate to replace starts, once the pool is full
+	private boolean stale = false;
+
+	public ParetoFrontier(UtilityEvaluator utilityEvaluator) {
+		this.utilityEvaluator = utilityEvaluator;
+	}
+
+	public void addOpponent(OpponentModel opponentModel) {
+		opponentModels.add(opponentModel);
+		numberOfOffers = Arrays.copyOf(numberOfOffers, opponentModels.size());
+		numberOfOffers[numberOfOffers.length - 1] = -1;
+		stale = true;
+	}
+
+	public void add(int[] bid) {
+		int hash = Arrays.hashCode(bid);
+
+		for (int c = 0; c < numberOfCandidates; c++)
+			if (bids[c] == bid || (hashes[c] == hash && Arrays.equals(bids[c], bid)))
+				return;
+
+		int c = numberOfCandidates;
+
+		if (numberOfCandidates < MAXIMUM_NUMBER_OF_CANDIDATES)
+			numberOfCandidates++;
+		else
+			c = getCandidateToReplace();
+
+		if (onFrontier[c])
+			removeFromFrontier(c);
+
+		bids[c] = bid;
+		hashes[c] = hash;
+		utilities[c] = utilityEvaluator.getUtility(bid);
+
+		if (estimatedOffers[c] != null)
+			Arrays.fill(estimatedOffers[c], -1);
+
+		/* If a model changed, the estimates are computed at the next query anyway */
+		if (!isStale()) {
+			estimate(c);
+			insert(c);
+		}
+	}
+
+	private int getCandidateToReplace() {
+		for (int k = 0; k < MAXIMUM_NUMBER_OF_CANDIDATES; k++) {
+			int c = (oldestCandidate + k) % MAXIMUM_NUMBER_OF_CANDIDATES;
+
+			if (!onFrontier[c]) {
+				oldestCandidate = (c + 1) % MAXIMUM_NUMBER_OF_CANDIDATES;
+				return c;
+			}
+		}
+
+		/* Every candidate is on the frontier, the oldest one is replaced anyway */
+		int c = oldestCandidate;
+		oldestCandidate = (c + 1) % MAXIMUM_NUMBER_OF_CANDIDATES;
+		return c;
+	}
+
+	/* Recomputes the estimates of the candidate under the models that received an offer since they were computed */
+	private void estimate(int candidate) {
+		if (estimates[candidate] == null || estimates[candidate].length != opponentModels.size()) {
+			estimates[candidate] = new double[opponentModels.size()];
+			estimatedOffers[candidate] = new int[opponentModels.size()];
+			Arrays.fill(estimatedOffers[candidate], -1);
+		}
+
+		for (int o = 0; o < opponentModels.size(); o++) {
+			int offers = opponentModels.get(o).getNumberOfOffers();
+
+			if (estimatedOffers[candidate][o] != offers) {
+				estimates[candidate][o] = opponentModels.get(o).getEstimatedUtility(bids[candidate]);
+				estimatedOffers[candidate][o] = offers;
+			}
+		}
+	}
+
+	/* Returns true if candidate a is at least as good as candidate b for everyone, and better for someone */
+	private boolean dominates(int a, int b) {
+		boolean better = utilities[a] > utilities[b];
+
+		if (utilities[a] < utilities[b])
+			return false;
+
+		for (int o = 0; o < estimates[a].length; o++) {
+			if (estimates[a][o] < estimates[b][o])
+				return false;
+			if (estimates[a][o] > estimates[b][o])
+				better = true;
+		}
+
+		return better;
+	}
+
+	/* Only the frontier is compared, and the candidates it dominates are removed by swapping in the last one */
+	private void insert(int candidate) {
+		for (int f = 0; f < frontierSize; f++)
+			if (dominates(frontier[f], candidate))
+				return;
+
+		for (int f = frontierSize - 1; f >= 0; f--)
+			if (dominates(candidate, frontier[f]))
+				removeFromFrontier(frontier[f]);
+
+		onFrontier[candidate] = true;
+		frontier[frontierSize++] = candidate;
+	}
+
+	private void removeFromFrontier(int candidate) {
+		for (int f = 0; f < frontierSize; f++) {
+			if (frontier[f] == candidate) {
+				frontier[f] = frontier[--frontierSize];
+				break;
+			}
+		}
+
+		onFrontier[candidate] = false;
+	}
+
+	private boolean isStale() {
+		for (int o = 0; o < opponentModels.size() && !stale; o++)
+			if (numberOfOffers[o] != opponentModels.get(o).getNumberOfOffers())
+				stale = true;
+
+		return stale;
+	}
+
+	private void refresh() {
+		if (!isStale())
+			return;
+
+		for (int o = 0; o < opponentModels.size(); o++)
+			numberOfOffers[o] = opponentModels.get(o).getNumberOfOffers();
+
+		for (int f = 0; f < frontierSize; f++)
+			onFrontier[frontier[f]] = false;
+
+		frontierSize = 0;
+
+		for (int c = 0; c < numberOfCandidates; c++)
+			estimate(c);
+
+		for (int c = 0; c < numberOfCandidates; c++)
+			insert(c);
+
+		stale = false;
+	}
+
+	/* Returns the candidate with utility >= threshold that maximizes the minimum estimate of the opponents
+	   (the higher own utility on ties), or null if there is no opponent or no such candidate.
+	   The candidates in offeredBids are skipped, unless all the candidates above the threshold are in it */
+	public int[] getMaximinBid(double threshold, SeenBids offeredBids) {
+		if (opponentModels.isEmpty())
+			return null;
+
+		refresh();
+
+		int best = getMaximinCandidate(threshold, offeredBids);
+
+		if (best < 0)
+			best = getMaximinCandidate(threshold, null);
+
+		return (best >= 0) ? bids[best] : null;
+	}
+
+	private int getMaximinCandidate(double threshold, SeenBids excludedBids) {
+		int best = -1;
+		double bestEstimate = -1;
+
+		for (int f = 0; f < frontierSize; f++) {
+			int c = frontier[f];
+
+			if (utilities[c] < threshold || (excludedBids != null && excludedBids.contains(bids[c])))
+				continue;
+
+			double estimate = Double.POSITIVE_INFINITY;
+
+			for (int o = 0; o < estimates[c].length; o++)
+				estimate = Math.min(estimate, estimates[c][o]);
+
+			if (estimate > bestEstimate || (estimate == bestEstimate && utilities[c] > utilities[best])) {
+				best = c;
+				bestEstimate = estimate;
+			}
+		}
+
+		return best;
+	}
+
+	public int getNumberOfCandidates() {
+		return numberOfCandidates;
+	}
+}
@@ -0,0 +1,133 @@
+package negotiator.MadAgent;
+
+import java.util.*;
+import list.Tuple;
+import negotiator.*;
+import negotiator.persistent.*;
+
+/* -------------------------------- SESSION HISTORY --------------------------------
+ * Aggregate of the previous sessions of the agent with a profile, used for warm-starting the strategy.
+ * 	- The framework gives the agent a StandardInfoList of all its previous sessions with the profile, which grows
+ * 	  by one session per session. The aggregates are kept in a static map keyed by the profile, and every
+ * 	  aggregate remembers how many sessions it has processed, so only the new sessions are processed at init.
+ * 	- The key alone does not tell two lists apart (two tournaments in the same JVM, or two parties with the same
+ * 	  profile), so the aggregate also remembers the first and the last session it processed. The list continues the
+ * 	  aggregate only if it holds equal sessions at those positions, otherwise it is another list and the aggregate
+ * 	  is rebuilt from it. The sessions are compared by value, as the framework may give a deserialized copy of the
+ * 	  list in every session.
+ * 	- Utilities are averaged with exponential smoothing, so the recent sessions count more than the old ones.
+ * */
+public class SessionHistory {
+
+	private static final Map<String, SessionHistory> HISTORIES = new HashMap<String, SessionHistory>();
+	private static final double SMOOTHING = 0.3; // Weight of the newest session in the averages
+
+	private int numberOfSessions = 0;
+	private int numberOfAgreements = 0;
+	private double agreementUtility = -1; // Average utility of the agreements, -1 if there is none yet
+	private double bestOfferUtility = -1; // Average utility of the best offer of the opponents in each session
+	private double agreementTime = -1; // Estimated average time of the agreements as a fraction of the deadline (round deadlines only)
+	private StandardInfo firstSession = null; // First and last processed sessions, the fingerprint of the processed prefix
+	private StandardInfo lastSession = null;
+
+	/* Processes the new sessions of the history and returns a copy of the aggregate, ownName is the name of our agent
+	   (without the session number), used for telling our offers from the offers of the opponents */
+	public static synchronized SessionHistory get(String key, StandardInfoList history, String ownName) {
+		SessionHistory sessionHistory = HISTORIES.get(key);
+
+		if (sessionHistory == null || !sessionHistory.isPrefixOf(history)) {
+			sessionHistory = new SessionHistory();
+			HISTORIES.put(key, sessionHistory);
+		}
+
+		for (int i = sessionHistory.numberOfSessions; i < history.size(); i++)
+			sessionHistory.add(history.get(i), ownName);
+
+		return sessionHistory.copy();
+	}
+
+	private boolean isPrefixOf(StandardInfoList history) {
+		if (history.size() < numberOfSessions)
+			return false;
+
+		return numberOfSessions == 0 || (isSameSession(history.get(0), firstSession) && isSameSession(history.get(numberOfSessions - 1), lastSession));
+	}
+
+	/* Two sessions are the same if they have the same parties, deadline, offers and agreement */
+	private static boolean isSameSession(StandardInfo info, StandardInfo otherInfo) {
+		if (info == otherInfo)
+			return true;
+
+		return Objects.equals(info.getStartingAgent(), otherInfo.getStartingAgent())
+				&& Objects.equals(info.getAgentProfiles(), otherInfo.getAgentProfiles())
+				&& Objects.equals(info.getDeadline(), otherInfo.getDeadline())
+				&& Objects.equals(info.getUtilities(), otherInfo.getUtilities())
+				&& Objects.equals(info.getAgreement(), otherInfo.getAgreement());
+	}
+
+	private void add(StandardInfo info, String ownName) {
+		Tuple<Bid, Double> agreement = info.getAgreement();
+		double bestOffer = -1;
+
+		if (numberOfSessions == 0)
+			firstSession = info;
+
+		lastSession = info;
+		numberOfSessions++;
+
+		for (Tuple<String, Double> utility : info.getUtilities())
+			if (!utility.get1().startsWith(ownName) && utility.get2() > bestOffer)
+				bestOffer = utility.get2();
+
+		if (bestOffer >= 0)
+			bestOfferUtility = smooth(bestOfferUtility, bestOffer);
+
+		if (agreement != null && agreement.get1() != null) {
+			numberOfAgreements++;
+			agreementUtility = smooth(agreementUtility, agreement.get2());
+
+			/* Only an estimate: the history holds the offers but not the rounds, so the round of the agreement is taken as
+			   the number of offers per party. Rounds in which a party accepts instead of offering are not counted */
+			Deadline deadline = info.getDeadline();
+
+			if (deadline != null && deadline.getType() == DeadlineType.ROUND && deadline.getValue() > 0 && !info.getAgentProfiles().isEmpty())
+				agreementTime = smooth(agreementTime, Math.min(1, (double) info.getUtilities().size() / info.getAgentProfiles().size() / deadline.getValue()));
+		}
+	}
+
+	private static double smooth(double average, double value) {
+		return (average < 0) ? value : (1 - SMOOTHING) * average + SMOOTHING * value;
+	}
+
+	private SessionHistory copy() {
+		SessionHistory copy = new SessionHistory();
+
+		copy.numberOfSessions = numberOfSessions;
+		copy.numberOfAgreements = numberOfAgreements;
+		copy.agreementUtility = agreementUtility;
+		copy.bestOfferUtility = bestOfferUtility;
+		copy.agreementTime = agreementTime;
+
+		return copy;
+	}
+
+	public int getNumberOfSessions() {
+		return numberOfSessions;
+	}
+
+	public double getAgreementRate() {
+		return (numberOfSessions > 0) ? (double) numberOfAgreements / numberOfSessions : 0;
+	}
+
+	public double getAgreementUtility() {
+		return agreementUtility;
+	}
+
+	public double getBestOfferUtility() {
+		return bestOfferUtility;
+	}
+
+	public double getAgreementTime() {
+		return agreementTime;
+	}
+}
@@ -0,0 +1,186 @@
+package negotiator.MadAgent;
+
+import negotiator.issue.*;
+import negotiator.utility.*;
+
+/* -------------------------------- COMPILED UTILITY EVALUATOR --------------------------------
+ * For additive utility spaces, u(bid) = w1 * e1(v1) + w2 * e2(v2) + ... + wn * en(vn).
+ * The products wi * ei(v) are computed once and stored in a single flat table, where the contribution
+ * of the value with index v of the i-th issue is at contributions[offsets[i] + v].
+ * The utility of an encoded bid is then just the sum of n array elements.
+ * For non-additive utility spaces, the bid is decoded and the utility space is used directly, through a cache:
+ * 	- An evaluation decodes the bid and checks every constraint, and the same bids are evaluated again by the search,
+ * 	  the frontier and the ranking of the preferred bids, so they all share the cache of the evaluator.
+ * 	- The cache is direct-mapped by the key of the bid (see BidEncoder.getKey), a bid evicts the bid in its slot.
+ * 	- The cache is not synchronized and a Genius utility space is not known to be thread-safe, so a non-additive
+ * 	  evaluator is only used by the thread of the agent. The pipeline threads only use additive evaluators, whose
+ * 	  table is never written after the constructor.
+ * */
+public class UtilityEvaluator {
+
+	private static final int MAXIMUM_TABLE_SIZE = 1 << 22; // Integer issues with huge ranges are not flattened
+	private static final int CACHE_SIZE = 1 << 16; // Must be a power of 2
+
+	private static class CacheEntry {
+		private final long key;
+		private final double utility;
+
+		private CacheEntry(long key, double utility) {
+			this.key = key;
+			this.utility = utility;
+		}
+	}
+
+	private UtilitySpace utilitySpace = null;
+	private BidEncoder bidEncoder = null;
+	private boolean additive = false;
+	private int[] offsets = null;
+	private double[] contributions = null;
+	private CacheEntry[] cache = null; // Only for non-additive spaces
+
+	public UtilityEvaluator(UtilitySpace utilitySpace, BidEncoder bidEncoder) {
+		this.utilitySpace = utilitySpace;
+		this.bidEncoder = bidEncoder;
+
+		if (utilitySpace instanceof AdditiveUtilitySpace)
+			additive = compile((AdditiveUtilitySpace) utilitySpace);
+
+		if (!additive)
+			cache = new CacheEntry[CACHE_SIZE];
+	}
+
+	private boolean compile(AdditiveUtilitySpace additiveUtilitySpace) {
+		int numberOfIssues = bidEncoder.getNumberOfIssues();
+		long tableSize = 0;
+
+		offsets = new int[numberOfIssues + 1];
+
+		for (int i = 0; i < numberOfIssues; i++) {
+			offsets[i] = (int) tableSize;
+			tableSize += bidEncoder.getNumberOfValues(i);
+
+			if (tableSize > MAXIMUM_TABLE_SIZE)
+				return false;
+		}
+
+		offsets[numberOfIssues] = (int) tableSize;
+		contributions = new double[(int) tableSize];
+
+		try {
+			for (int i = 0; i < numberOfIssues; i++) {
+				int issueNumber = bidEncoder.getIssueNumber(i);
+				double weight = additiveUtilitySpace.getWeight(issueNumber);
+				Evaluator evaluator = additiveUtilitySpace.getEvaluator(issueNumber);
+
+				for (int v = 0; v < bidEncoder.getNumberOfValues(i); v++)
+					contributions[offsets[i] + v] = weight * getEvaluation(evaluator, bidEncoder.getValue(i, v));
+			}
+		} catch (Exception e) {
+			System.err.println("An exception thrown while compiling the utility space..");
+			return false;
+		}
+
+		return true;
+	}
+
+	private double getEvaluation(Evaluator evaluator, Value value) throws Exception {
+		if (evaluator instanceof EvaluatorDiscrete)
+			return ((EvaluatorDiscrete) evaluator).getEvaluation((ValueDiscrete) value);
+		if (evaluator instanceof EvaluatorInteger)
+			return ((EvaluatorInteger) evaluator).getEvaluation(((ValueInteger) value).getValue());
+		if (evaluator instanceof EvaluatorReal)
+			return ((EvaluatorReal) evaluator).getEvaluation(((ValueReal) value).getValue());
+
+		throw new IllegalArgumentException("Evaluator " + evaluator + " is not supported");
+	}
+
+	public double getUtility(int[] bid) {
+		if (!additive)
+			return getCachedUtility(bid);
+
+		double utility = 0;
+
+		for (int i = 0; i < bid.length; i++)
+			utility += contributions[offsets[i] + bid[i]];
+
+		return utility;
+	}
+
+	private double getCachedUtility(int[] bid) {
+		long key = bidEncoder.getKey(bid);
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & (CACHE_SIZE - 1);
+		CacheEntry entry = cache[slot];
+
+		if (entry != null && entry.key == key) {
+			if (AgentMetrics.ENABLED)
+				AgentMetrics.countUtilityCacheHit();
+
+			return entry.utility;
+		}
+
+		double utility = utilitySpace.getUtility(bidEncoder.decode(bid));
+
+		if (AgentMetrics.ENABLED)
+			AgentMetrics.countUtilityEvaluation();
+
+		cache[slot] = new CacheEntry(key, utility);
+		return utility;
+	}
+
+	/* The best bid takes the value with the highest contribution in every issue, only valid for additive spaces */
+	public int[] getBestBid() {
+		int[] bestBid = new int[bidEncoder.getNumberOfIssues()];
+
+		for (int i = 0; i < bestBid.length; i++)
+			for (int v = 1; v < bidEncoder.getNumberOfValues(i); v++)
+				if (getContribution(i, v) > getContribution(i, bestBid[i]))
+					bestBid[i] = v;
+
+		return bestBid;
+	}
+
+	/* Any bid with a lower utility than the best bid loses at least the smallest positive loss of a single value swap,
+	   so the best bid with that swap applied is the second best bid (with a distinct utility), only valid for additive spaces */
+	public int[] getSecondBestBid() {
+		int[] secondBestBid = getBestBid();
+		int swapIssue = -1;
+		int swapValue = -1;
+		double minimumLoss = Double.POSITIVE_INFINITY;
+
+		for (int i = 0; i < secondBestBid.length; i++) {
+			for (int v = 0; v < bidEncoder.getNumberOfValues(i); v++) {
+				double loss = getContribution(i, secondBestBid[i]) - getContribution(i, v);
+
+				if (loss > 0 && loss < minimumLoss) {
+					minimumLoss = loss;
+					swapIssue = i;
+					swapValue = v;
+				}
+			}
+		}
+
+		/* If all the bids have the same utility, there is no second best bid and the best bid is returned */
+		if (swapIssue != -1)
+			secondBestBid[swapIssue] = swapValue;
+
+		return secondBestBid;
+	}
+
+	/* Contribution of the value with the given index to the utility, only valid for additive spaces */
+	public double getContribution(int issueIndex, int valueIndex) {
+		return contributions[offsets[issueIndex] + valueIndex];
+	}
+
+	public boolean isAdditive() {
+		return additive;
+	}
+
+	public BidEncoder getBidEncoder() {
+		return bidEncoder;
+	}
+
+	public UtilitySpace getUtilitySpace() {
+		return utilitySpace;
+	}
+}